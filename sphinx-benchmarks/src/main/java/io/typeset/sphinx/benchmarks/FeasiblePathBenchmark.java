@@ -0,0 +1,90 @@
+package io.typeset.sphinx.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.typeset.sphinx.Params;
+import io.typeset.sphinx.generators.GraphGenerator;
+import io.typeset.sphinx.generators.ModelGenerator;
+import io.typeset.sphinx.generators.TestGenerator;
+import io.typeset.sphinx.generators.ds.GenerationManifest;
+import io.typeset.sphinx.model.GraphNode;
+import io.typeset.sphinx.model.spec.Spec;
+import io.typeset.sphinx.readers.ConfigReader;
+
+/**
+ * Benchmarks finding the given() path of every spec of a model. A new test
+ * generator, with an empty path cache, is used for every invocation, so every
+ * path is searched for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FeasiblePathBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int screens;
+
+	private Workload workload;
+
+	private DefaultDirectedGraph<GraphNode, DefaultEdge> graph;
+
+	private GraphGenerator graphGenerator;
+
+	private ModelGenerator classGenerator;
+
+	private TestGenerator testGenerator;
+
+	private List<Spec> specs;
+
+	@Setup
+	public void setUp() throws Exception {
+		workload = new Workload(screens, 0);
+		workload.configure();
+		graphGenerator = new GraphGenerator(workload.getModel());
+		graph = graphGenerator.initialize();
+		graphGenerator.addImplicitAssertions();
+		classGenerator = new ModelGenerator(graph);
+		classGenerator.generateClasses();
+	}
+
+	@Setup(Level.Invocation)
+	public void newTestGenerator() {
+		testGenerator = new TestGenerator(graph, graphGenerator, classGenerator, new Params(),
+				new GenerationManifest(ConfigReader.outputDir));
+		specs = testGenerator.getSpecs();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		workload.delete();
+	}
+
+	@Benchmark
+	public void getFeasiblePath(Blackhole blackhole) {
+		for (Spec spec : specs) {
+			blackhole.consume(testGenerator.getFeasiblePath(spec));
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package io.typeset.sphinx.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.typeset.sphinx.generators.GraphGenerator;
+import io.typeset.sphinx.model.GraphNode;
+
+/**
+ * Benchmarks building and checking the graph of a model, and parsing the
+ * preconditions of its controls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphGeneratorBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int screens;
+
+	private Workload workload;
+
+	private GraphGenerator graphGenerator;
+
+	@Setup
+	public void setUp() throws Exception {
+		workload = new Workload(screens, 0);
+		workload.configure();
+		graphGenerator = new GraphGenerator(workload.getModel());
+		graphGenerator.initialize();
+		graphGenerator.addImplicitAssertions();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		workload.delete();
+	}
+
+	@Benchmark
+	public DefaultDirectedGraph<GraphNode, DefaultEdge> initialize() throws Exception {
+		return new GraphGenerator(workload.getModel()).initialize();
+	}
+
+	@Benchmark
+	public void consistencyCheck() {
+		graphGenerator.consistencyCheck();
+	}
+
+	@Benchmark
+	public void parsePrecondition(Blackhole blackhole) {
+		for (List<String> precondition : workload.getPreconditions()) {
+			blackhole.consume(graphGenerator.parsePrecondition(precondition));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package io.typeset.sphinx.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.typeset.sphinx.generators.GraphGenerator;
+import io.typeset.sphinx.generators.ModelGenerator;
+import io.typeset.sphinx.model.GraphNode;
+
+/**
+ * Benchmarks generating the classes of a model that were generated before,
+ * so every file compares equal and is left alone: the cost of a run in which
+ * the model has not changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IncrementalModelGeneratorBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int screens;
+
+	private Workload workload;
+
+	private DefaultDirectedGraph<GraphNode, DefaultEdge> graph;
+
+	@Setup
+	public void setUp() throws Exception {
+		workload = new Workload(screens, 0);
+		workload.configure();
+		GraphGenerator graphGenerator = new GraphGenerator(workload.getModel());
+		graph = graphGenerator.initialize();
+		graphGenerator.addImplicitAssertions();
+		new ModelGenerator(graph).generateClasses();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		workload.delete();
+	}
+
+	@Benchmark
+	public ModelGenerator generateUnchangedClasses() throws Exception {
+		ModelGenerator classGenerator = new ModelGenerator(graph);
+		classGenerator.generateClasses();
+		return classGenerator;
+	}
+}
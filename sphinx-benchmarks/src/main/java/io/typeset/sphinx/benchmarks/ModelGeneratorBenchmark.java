@@ -0,0 +1,71 @@
+package io.typeset.sphinx.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.typeset.sphinx.generators.GraphGenerator;
+import io.typeset.sphinx.generators.ModelGenerator;
+import io.typeset.sphinx.model.GraphNode;
+
+/**
+ * Benchmarks generating the classes of a model from scratch. The output is
+ * deleted before every invocation, so every file is written; see
+ * IncrementalModelGeneratorBenchmark for a run where nothing has changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModelGeneratorBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int screens;
+
+	private Workload workload;
+
+	private DefaultDirectedGraph<GraphNode, DefaultEdge> graph;
+
+	@Setup
+	public void setUp() throws Exception {
+		workload = new Workload(screens, 0);
+		workload.configure();
+		GraphGenerator graphGenerator = new GraphGenerator(workload.getModel());
+		graph = graphGenerator.initialize();
+		graphGenerator.addImplicitAssertions();
+	}
+
+	@Setup(Level.Invocation)
+	public void clearOutput() throws IOException {
+		workload.clearOutput();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		workload.delete();
+	}
+
+	@Benchmark
+	public ModelGenerator generateClasses() throws Exception {
+		ModelGenerator classGenerator = new ModelGenerator(graph);
+		classGenerator.generateClasses();
+		return classGenerator;
+	}
+}
@@ -0,0 +1,121 @@
+package io.typeset.sphinx.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import io.typeset.sphinx.generators.WorkloadGenerator;
+import io.typeset.sphinx.model.Control;
+import io.typeset.sphinx.model.Model;
+import io.typeset.sphinx.readers.ConfigReader;
+
+/**
+ * The Class Workload. A synthetic product model of a given number of screens,
+ * with specs over it, used as the input of the benchmarks. It is made by the
+ * WorkloadGenerator with a fixed seed, ten screens to a page and a spec for
+ * every screen that has a next one, chained at most chainDepth deep.
+ */
+public class Workload {
+
+	static final int SCREENS_PER_PAGE = 10;
+	static final long SEED = 1;
+
+	/** The directory holding the config, the specs and the output. */
+	private final File dir;
+
+	/** The generator of the model and the specs. */
+	private final WorkloadGenerator generator = new WorkloadGenerator();
+
+	/** The precondition of every control that has one. */
+	private final List<List<String>> preconditions = new ArrayList<>();
+
+	/**
+	 * Builds a workload in a new temporary directory.
+	 *
+	 * @param screens
+	 *            the number of screens
+	 * @param chainDepth
+	 *            the maximum number of post specs chained after a spec
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Workload(int screens, int chainDepth) throws IOException {
+		this.dir = Files.createTempDirectory("sphinx-workload").toFile();
+		generator.setSeed(SEED);
+		generator.setPages((screens + SCREENS_PER_PAGE - 1) / SCREENS_PER_PAGE);
+		generator.setScreensPerPage(SCREENS_PER_PAGE);
+		generator.setSpecCount(screens);
+		generator.setPostChainDepth(chainDepth);
+		generator.generate();
+		for (Control control : generator.getModel().getControls().values()) {
+			if (control.getPrecondition() != null) {
+				preconditions.add(control.getPrecondition());
+			}
+		}
+	}
+
+	/**
+	 * Writes the model, the specs and the config and reads the config, which
+	 * the generators take their settings from.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void configure() throws IOException {
+		generator.write(new File(dir, "input"));
+
+		StringBuilder config = new StringBuilder();
+		config.append("input-dir=").append(new File(dir, "input").getAbsolutePath()).append('\n');
+		config.append("output-dir=").append(new File(dir, "output").getAbsolutePath()).append('\n');
+		config.append("homepage=https://example.com\n");
+		config.append("tests=\n");
+		config.append("generate-classes=true\n");
+		config.append("debug-mode=false\n");
+		config.append("execution-tree=true\n");
+		config.append("page-implicit=atPage\n");
+		config.append("interm-implicit=canSee\n");
+		config.append("control-implicit=contains, equals, startsWith, endsWith, empty\n");
+		config.append("requires-data=contains, equals, startsWith, endsWith, type\n");
+		File configFile = new File(dir, "config.properties");
+		write(configFile, config.toString());
+		ConfigReader.read(configFile.getAbsolutePath());
+	}
+
+	/**
+	 * Deletes the generated output, so the next run writes every file again
+	 * rather than skipping the ones that have not changed.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void clearOutput() throws IOException {
+		FileUtils.deleteDirectory(new File(dir, "output"));
+	}
+
+	/**
+	 * Deletes the directory of the workload.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void delete() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	public Model getModel() {
+		return generator.getModel();
+	}
+
+	public List<List<String>> getPreconditions() {
+		return preconditions;
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
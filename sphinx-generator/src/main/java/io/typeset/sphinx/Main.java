@@ -31,6 +31,8 @@ import io.typeset.sphinx.exceptions.InvalidConfigException;
 import io.typeset.sphinx.generators.GraphGenerator;
 import io.typeset.sphinx.generators.TestGenerator;
 import io.typeset.sphinx.generators.TestNGGenerator;
+import io.typeset.sphinx.generators.ds.GenerationManifest;
+import io.typeset.sphinx.generators.ds.GenerationStats;
 
 import io.typeset.sphinx.model.spec.Spec;
 import io.typeset.sphinx.readers.ConfigReader;
@@ -55,6 +57,7 @@ public class Main {
 		}
 
 		// read configuration
+		GenerationStats.startPhase("config");
 		ConfigReader.read(configFile);
 
 		if (params.getSlackChannel() != null) {
@@ -63,48 +66,75 @@ public class Main {
 		System.out.println("Slack notification channel set to " + slackChannel);
 		
 
-		// clean the output directory
-		cleanOutput();
+		// clean the output directory, unless an incremental run can reuse it
+		GenerationStats.startPhase("output");
+		String inputsHash = getInputsHash(configFile);
+		GenerationManifest manifest = ConfigReader.incremental ? GenerationManifest.load(ConfigReader.outputDir) : null;
+		if (manifest != null && manifest.hasInputs(inputsHash)) {
+			logger.info("Model and config unchanged, regenerating changed specs only");
+			cleanScreenshots();
+		} else {
+			cleanOutput();
+			manifest = new GenerationManifest(ConfigReader.outputDir);
+		}
+		manifest.setInputsHash(inputsHash);
 
 		// read the model
+		GenerationStats.startPhase("model");
 		Model model = ModelReader.read();
 
 		// initialize the graph
+		GenerationStats.startPhase("graph");
 		GraphGenerator graphGenerator = new GraphGenerator(model);
 		DefaultDirectedGraph<GraphNode, DefaultEdge> tgraph = graphGenerator.initialize();
+		GenerationStats.count(GenerationStats.VERTICES, tgraph.vertexSet().size());
+		GenerationStats.count(GenerationStats.EDGES, tgraph.edgeSet().size());
 		graphGenerator.toDot();
 
 		// adding implicit assertions
+		GenerationStats.startPhase("implicitAssertions");
 		graphGenerator.addImplicitAssertions();
 
 		// consistency checks on the graph
+		GenerationStats.startPhase("consistencyCheck");
 		graphGenerator.consistencyCheck();
 
 		if (!ConfigReader.generateClasses) {
 			logger.info("Stopping after graph generation. Classes will be not generated");
+			GenerationStats.write(ConfigReader.outputDir);
 			System.exit(0);
 		}
 
 		// convert the model to Java classes
+		GenerationStats.startPhase("classes");
 		ModelGenerator classGenerator = new ModelGenerator(tgraph);
 		classGenerator.generateClasses();
 
 		// covert specification to feasible paths; and then eventually into classes
-		TestGenerator testGenerator = new TestGenerator(tgraph, graphGenerator, classGenerator, params);
+		TestGenerator testGenerator = new TestGenerator(tgraph, graphGenerator, classGenerator, params,
+				manifest);
+		GenerationStats.startPhase("specs");
 		List<Spec> specList = testGenerator.getSpecs();
+		GenerationStats.count(GenerationStats.SPECS, specList.size());
+		GenerationStats.startPhase("tests");
 		Map<String, String> generatedTests = testGenerator.generateTest(specList);
+		GenerationStats.count(GenerationStats.TESTS, generatedTests.size());
 
 		// generate test classes
+		GenerationStats.startPhase("testng");
 		TestNGGenerator testNGGenerator = new TestNGGenerator(specList, "FlyPaper", ConfigReader.homepage);
 		testNGGenerator.generateXML(generatedTests);
 
-		showStats(generatedTests);
+		File statsFile = GenerationStats.write(ConfigReader.outputDir);
+		showStats(generatedTests, testGenerator, statsFile);
 
 	}
 
-	private static void showStats(Map<String, String> generatedTests) {
+	private static void showStats(Map<String, String> generatedTests, TestGenerator testGenerator, File statsFile) {
 		System.out.println("=======================================");
 		System.out.println("Total tests generated : " + generatedTests.size());
+		System.out.println("Feasible path cache : " + testGenerator.getPathCache());
+		System.out.println("Generation stats : " + statsFile);
 		System.out.println("=======================================");
 
 	}
@@ -142,6 +172,17 @@ public class Main {
 		return params;
 	}
 
+	/**
+	 * Hashes the inputs every generated test depends on: the model, the config,
+	 * the action timings and the generator version.
+	 */
+	private static String getInputsHash(String configFile) throws IOException {
+		File modelFile = new File(ConfigReader.inputDir + File.separator + "model.yml");
+		File timingsFile = ConfigReader.actionTimings == null ? null : new File(ConfigReader.actionTimings);
+		String filesHash = GenerationManifest.hash(modelFile, new File(configFile), timingsFile);
+		return GenerationManifest.hash(filesHash, GenerationManifest.getGeneratorVersion());
+	}
+
 	public static void cleanOutput() {
 		logger.debug("Cleaning output directory");
 		// clean output directory
@@ -152,6 +193,10 @@ public class Main {
 
 		}
 
+		cleanScreenshots();
+	}
+
+	public static void cleanScreenshots() {
 		logger.debug("Cleaning screenshots directory");
 		// clean output directory
 		try {
@@ -15,9 +15,6 @@ import java.util.Set;
 import org.apache.commons.beanutils.BeanUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jgrapht.GraphPath;
-
-import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 
@@ -30,6 +27,7 @@ import io.typeset.sphinx.exceptions.InvalidClauseException;
 import io.typeset.sphinx.exceptions.InvalidLiteralException;
 import io.typeset.sphinx.exceptions.InvalidModelException;
 import io.typeset.sphinx.exceptions.InvalidKeyException;
+import io.typeset.sphinx.generators.ds.ReachabilityIndex;
 
 import io.typeset.sphinx.model.App;
 import io.typeset.sphinx.model.Control;
@@ -72,6 +70,9 @@ public class GraphGenerator {
 	/** Screen to page mapping */
 	private Map<String, String> screenToPage;
 
+	/** The reachability index, built once the graph is complete */
+	private ReachabilityIndex reachabilityIndex;
+
 	/**
 	 * Instantiates a new graph generator.
 	 *
@@ -333,6 +334,9 @@ public class GraphGenerator {
 		// resolve preconditions
 		resolvePreconditions();
 
+		// index reachability now that the graph is complete
+		reachabilityIndex = new ReachabilityIndex(graph);
+
 		return graph;
 
 	}
@@ -633,10 +637,8 @@ public class GraphGenerator {
 		// 1. Isolated nodes not allowed
 		Set<GraphNode> allNodes = graph.vertexSet();
 		for (GraphNode node : allNodes) {
-			GraphPath<GraphNode, DefaultEdge> path = DijkstraShortestPath.findPathBetween(graph, rootNode, node);
-
-			if (path == null) {
-				logger.error("No path between " + rootNode + " and " + node + " is " + path);
+			if (!reachabilityIndex.canReach(rootNode, node)) {
+				logger.error("No path between " + rootNode + " and " + node);
 				throw new InvalidModelException(node.toString() + " is isolated");
 			}
 		}
@@ -747,6 +749,15 @@ public class GraphGenerator {
 		return rootNode;
 	}
 
+	/**
+	 * Gets the reachability index.
+	 *
+	 * @return the reachability index
+	 */
+	public ReachabilityIndex getReachabilityIndex() {
+		return reachabilityIndex;
+	}
+
 	/**
 	 * Gets the screen to page.
 	 *
@@ -9,6 +9,7 @@ import java.util.Map;
 import java.util.Set;
 
 import io.typeset.sphinx.generators.util.GeneratorUtilities;
+import io.typeset.sphinx.generators.util.IncrementalCodeWriter;
 import io.typeset.sphinx.model.GraphNode;
 import io.typeset.sphinx.model.NodeType;
 import org.apache.commons.io.FileUtils;
@@ -57,6 +58,9 @@ public class ModelGenerator {
 	
 	private JDefinedClass retryClass;
 
+	/** The assertion batch class, used by given() and then() methods. */
+	private JDefinedClass assertionBatchClass;
+
 	private Map<GraphNode, List<String>> implementedGetters = new HashMap<>();
 
 	/**
@@ -140,6 +144,10 @@ public class ModelGenerator {
 		return retryClass;
 	}
 
+	public JDefinedClass getAssertionBatchClass() {
+		return assertionBatchClass;
+	}
+
 	/**
 	 * Generate a bunch of auxiliary classes useful for test execution
 	 *
@@ -164,6 +172,9 @@ public class ModelGenerator {
 		retryClass = cm._class(className);
 		retryClass._extends(configClass);
 
+		className = packageName + "." + "AssertionBatch";
+		assertionBatchClass = cm._class(className);
+
 	}
 
 	/**
@@ -188,7 +199,7 @@ public class ModelGenerator {
 		String filepath = outputDir + File.separator + "java";
 		File file = new File(filepath);
 		file.mkdirs();
-		cm.build(file);
+		cm.build(new IncrementalCodeWriter(file));
 	}
 
 	/**
@@ -334,7 +345,7 @@ public class ModelGenerator {
 		File file = new File(filepath);
 		file.mkdirs();
 try{
-		cm.build(file);
+		cm.build(new IncrementalCodeWriter(file));
 }catch(Exception e){
 System.out.println("Error while generating " + className);
 System.exit(1);
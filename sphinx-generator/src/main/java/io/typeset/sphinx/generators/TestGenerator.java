@@ -1,17 +1,15 @@
 package io.typeset.sphinx.generators;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InterruptedIOException;
 import java.lang.reflect.InvocationTargetException;
 
 import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -20,43 +18,55 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeSet;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import io.typeset.sphinx.generators.ds.ChainNode;
+import io.typeset.sphinx.generators.ds.GenerationContext;
+import io.typeset.sphinx.generators.ds.GenerationManifest;
 import io.typeset.sphinx.generators.ds.ScaffolingData;
+import io.typeset.sphinx.generators.search.ActionCostModel;
+import io.typeset.sphinx.generators.search.FeasiblePathCache;
+import io.typeset.sphinx.generators.search.FeasiblePathSearch;
 import io.typeset.sphinx.generators.util.GeneratorUtilities;
+import io.typeset.sphinx.generators.util.IncrementalCodeWriter;
 import io.typeset.sphinx.model.GraphNode;
 import io.typeset.sphinx.model.NodeType;
 import io.typeset.sphinx.model.spec.Action;
 import io.typeset.sphinx.model.spec.Spec;
 import io.typeset.sphinx.model.spec.State;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jgrapht.GraphPath;
-import org.jgrapht.alg.shortestpath.AllDirectedPaths;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
 
 import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JCatchBlock;
+import com.sun.codemodel.JClass;
 import com.sun.codemodel.JClassAlreadyExistsException;
 import com.sun.codemodel.JCodeModel;
 import com.sun.codemodel.JDefinedClass;
 import com.sun.codemodel.JExpr;
 import com.sun.codemodel.JExpression;
-import com.sun.codemodel.JFieldRef;
 import com.sun.codemodel.JFieldVar;
 import com.sun.codemodel.JInvocation;
 import com.sun.codemodel.JMethod;
 import com.sun.codemodel.JMod;
 import com.sun.codemodel.JStatement;
+import com.sun.codemodel.JTryBlock;
 import com.sun.codemodel.JType;
 import com.sun.codemodel.JVar;
 
 import io.typeset.sphinx.exceptions.InvalidLiteralException;
-import io.typeset.sphinx.exceptions.InvalidNodeException;
+import io.typeset.sphinx.exceptions.InvalidModelException;
 import io.typeset.sphinx.exceptions.InvalidPathException;
 import io.typeset.sphinx.exceptions.InvalidPostSpec;
 import io.typeset.sphinx.exceptions.InvalidStackStateException;
-import io.typeset.sphinx.exceptions.TooComplexExpression;
 import io.typeset.sphinx.model.assertions.Clause;
 import io.typeset.sphinx.model.assertions.ExplicitAssertion;
 import io.typeset.sphinx.model.assertions.Literal;
@@ -70,26 +80,25 @@ public class TestGenerator {
 	private DefaultDirectedGraph<GraphNode, DefaultEdge> graph;
 	private String inputDir;
 
-	private JFieldRef outVar;
 	private ModelGenerator classGenerator;
 
-	// program state
-	private Map<GraphNode, JFieldVar> definedPages = null;
-	private Map<JFieldVar, GraphNode> fieldVarToNodeMap = null;
-	private Stack<GraphNode> stack = null;
-	private JFieldVar activePageVariable = null;
-	private Map<String, GraphNode> usedPages = null;
-
-	private AllDirectedPaths<GraphNode, DefaultEdge> allDirectedPath;
+	private FeasiblePathCache pathCache;
+	private GenerationManifest manifest;
 	private static final Logger logger = LogManager.getLogger("TestGenerator");
+	private static final List<String> FAST_FORWARD_STATE = Arrays.asList("cookies", "localStorage", "sessionStorage",
+			"query");
 	private Map<String, Spec> specMap = new HashMap<String, Spec>();
+	private Map<Spec, String> specKeys = new HashMap<>();
+	private Map<String, String> specSources = new HashMap<>();
 	private Map<String, String> generatedTests = new HashMap<>();
-	private int specChainCounter = 0;
 	private Set<String> enabledSpecs;
 
 	// TODO: get this some other way
 	private int MAX_LENGTH = 25;
 	private String defaultElementNumber = "0";
+
+	/** The element index of steps that are not about a single element. */
+	private static final String NO_ELEMENT = "-1";
 	private Params params;
 
   private Set<String> getEnabledSpecs() {
@@ -144,14 +153,16 @@ public class TestGenerator {
   }
 
 	public TestGenerator(DefaultDirectedGraph<GraphNode, DefaultEdge> graph, GraphGenerator graphGenerator,
-			ModelGenerator classGenerator, Params params) {
+			ModelGenerator classGenerator, Params params, GenerationManifest manifest) {
 		this.graph = graph;
 		this.graphGenerator = graphGenerator;
 		this.inputDir = ConfigReader.inputDir;
 		this.outputDir = ConfigReader.outputDir;
 		this.classGenerator = classGenerator;
-		this.allDirectedPath = new AllDirectedPaths<>(graph);
+		this.pathCache = new FeasiblePathCache(new FeasiblePathSearch(graph, graphGenerator.getReachabilityIndex(),
+				new ActionCostModel(ConfigReader.actionTimings), MAX_LENGTH));
 		this.params = params;
+		this.manifest = manifest;
 		this.enabledSpecs = getEnabledSpecs();
 	}
 
@@ -181,24 +192,11 @@ public class TestGenerator {
 		return specFiles;
 	}
 
-	public List<GraphPath<GraphNode, DefaultEdge>> getPaths(GraphNode sNode, GraphNode dNode, int maxLength) {
-
-		if (sNode == null || dNode == null) {
-			throw new InvalidNodeException("node null cannot proceed");
-		}
-
-		// AllDirectedPaths<GraphNode, DefaultEdge> allDirectedPath = new
-		// AllDirectedPaths<>(graph);
-
-		List<GraphPath<GraphNode, DefaultEdge>> paths = allDirectedPath.getAllPaths(sNode, dNode, false, maxLength);
-		return paths;
-
-	}
-
 	public List<Spec> getSpecs() {
 
 		List<Spec> specList = new ArrayList<>();
 		Map<String, String> specFiles = getSpecFiles();
+		specSources.putAll(specFiles);
 		for (String skey : specFiles.keySet()) {
 			String sf = specFiles.get(skey);
 			try {
@@ -220,6 +218,7 @@ public class TestGenerator {
 					logger.info("Invalid spec " + spec);
 				}
 				specMap.put(skey, spec);
+				specKeys.put(spec, skey);
 			} catch (IOException e) {
 				logger.info("Error parsing spec file : " + sf);
 			}
@@ -313,105 +312,37 @@ public class TestGenerator {
 		String startScreen = spec.getGiven().getScreen();
 		GraphNode rootNode = graphGenerator.getRootNode();
 		GraphNode startNode = graphGenerator.getNodeByKey(startScreen);
-		int minLength = 3;
 
-		for (int pathLength = minLength; pathLength <= MAX_LENGTH; pathLength++) {
-			logger.info("Checking paths for length " + pathLength);
-			List<GraphPath<GraphNode, DefaultEdge>> paths = getPaths(rootNode, startNode, pathLength);
-			if (paths != null) {
-
-				for (GraphPath<GraphNode, DefaultEdge> path : paths) {
-					// logger.info(path.getLength()+" paths "+path);
-					if (isPathViable(path, spec)) {
-						return path;
-					}
-				}
-			}
-		}
-
-		return null;
+		logger.info("Searching feasible path from " + rootNode + " to " + startNode);
+		return pathCache.getPath(rootNode, startNode);
 	}
 
-	private boolean isPathViable(GraphPath<GraphNode, DefaultEdge> path, Spec spec) {
-
-		List<String> assertions = spec.getGiven().getAssertions();
-
-		// condition for viability of a path
-		// it should be of less than or equal to max length
-		// it should invoke all assertions
-
-		// path length check
-		if (path.getLength() > MAX_LENGTH) {
-			return false;
-		}
-
-		// invoke assertion check
-		if (assertions != null) {
-			// TODO: implement assertion checking here
-		}
-
-		// check precondition on paths
-		List<GraphNode> nodesToHere = new ArrayList<GraphNode>();
-		for (DefaultEdge e : path.getEdgeList()) {
-			GraphNode srcNode = graph.getEdgeSource(e);
-
-			if (srcNode.getNodeType() == NodeType.CONTROL) {
-				ExplicitAssertion precondition = srcNode.getParsedPreCondition();
-				// logger.info("Constrain on " + srcNode + " ; " + precondition);
-				if (!satisfiesPrecondition(nodesToHere, precondition)) {
-					// logger.info(path + " does not satisfies precondition on node " +
-					// srcNode);
-					return false;
-				}
-			}
-			nodesToHere.add(srcNode);
-		}
-
-		return true;
+	public FeasiblePathCache getPathCache() {
+		return pathCache;
 	}
 
-	private boolean satisfiesPrecondition(List<GraphNode> nodesToHere, ExplicitAssertion precondition) {
-		if (precondition != null) {
-			checkExpressionComplexity(precondition);
-			// currently we only support very simple (single clause, single literal)
-			// preconditions
-
-			GraphNode constrainingNode = precondition.getclauses().get(0).getLiterals().get(0).getNode();
-			if (nodesToHere.contains(constrainingNode)) {
-				logger.info("Contraint satisfied found " + constrainingNode);
-				return true;
-			}
-			return false;
-
-		} else {
-			return true;
-		}
+	private void addTest(GenerationContext context, JDefinedClass definedClass) {
+		context.getGeneratedTests().put(definedClass.fullName(), "execute");
 	}
 
-	private void checkExpressionComplexity(ExplicitAssertion precondition) {
-		List<Clause> clauses = precondition.getclauses();
-		if (clauses.size() > 1) {
-			throw new TooComplexExpression(precondition.toString());
-		}
-		List<Literal> literals = clauses.get(0).getLiterals();
-		if (literals.size() > 1) {
-			throw new TooComplexExpression(precondition.toString());
-		}
+	private void annotateTest(JMethod method) {
+		method.annotate(org.testng.annotations.Test.class).param("retryAnalyzer", classGenerator.getRetryClass());
 	}
 
-	private void writeTestToFile(JCodeModel cModel, JDefinedClass definedClass) throws IOException {
+	private void writeTestToFile(GenerationContext context, JCodeModel cModel) throws IOException {
 		String filepath = outputDir + File.separator + "java";
 		logger.info("Generating class file " + filepath);
 
-		generatedTests.put(definedClass.fullName(), "execute");
 		File file = new File(filepath);
 		file.mkdirs();
-		cModel.build(file);
+		IncrementalCodeWriter writer = new IncrementalCodeWriter(file);
+		cModel.build(writer);
+		context.getWrittenFiles().addAll(writer.getFiles());
 
 	}
 
-	private ScaffolingData createMethodScaffolding(JCodeModel codeModel, JDefinedClass definedClass, String methodName,
-			boolean addAssert, String specName) {
+	private ScaffolingData createMethodScaffolding(GenerationContext context, JCodeModel codeModel,
+			JDefinedClass definedClass, String methodName, boolean addAssert, String specName) {
 		JMethod method = definedClass.method(JMod.PUBLIC, JType.parse(codeModel, "void"), methodName);
 		method._throws(InterruptedException.class);
 		method._throws(IOException.class);
@@ -425,17 +356,19 @@ public class TestGenerator {
 		}
 
 		ScaffolingData sdata = new ScaffolingData(method, block, assertVar);
+		sdata.setSpecName(specName);
 		String metaMsg = "SPEC_NAME:" + specName + ";METHOD_NAME:" + sdata.getMethod().name();
-		sdata.getBlock().invoke(outVar, "println").arg("[FUNCTION_START]" + metaMsg);
+		sdata.getBlock().invoke(context.getOutVar(), "println").arg("[FUNCTION_START]" + metaMsg);
 
 		return sdata;
 	}
 
-	private void addClosingAssert(ScaffolingData sdata, String specName) {
+	private void addClosingAssert(GenerationContext context, ScaffolingData sdata, String specName) {
+		evaluateChecks(sdata);
 		JStatement statement = sdata.getAssertVar().invoke("assertAll");
 		sdata.getBlock().add(statement);
 		String metaMsg = "SPEC_NAME:" + specName + ";METHOD_NAME:" + sdata.getMethod().name();
-		sdata.getBlock().invoke(outVar, "println").arg("[FUNCTION_END]" + metaMsg);
+		sdata.getBlock().invoke(context.getOutVar(), "println").arg("[FUNCTION_END]" + metaMsg);
 	}
 
 	private boolean requiresData(String actionType) {
@@ -447,9 +380,9 @@ public class TestGenerator {
 		return false;
 	}
 
-	private ScaffolingData generateSpecActions(JCodeModel codeModel, JDefinedClass definedClass,
+	private ScaffolingData generateSpecActions(GenerationContext context, JCodeModel codeModel, JDefinedClass definedClass,
 			Map<String, Action> actions, String methodName, String specName) {
-		ScaffolingData sdata = createMethodScaffolding(codeModel, definedClass, methodName, true, specName);
+		ScaffolingData sdata = createMethodScaffolding(context, codeModel, definedClass, methodName, true, specName);
 
 		if (actions != null && !actions.isEmpty()) {
 			for (String action_tag : actions.keySet()) {
@@ -469,47 +402,48 @@ public class TestGenerator {
 						actionData = graphGenerator.getNodeByKey(action.getAction_name()).getAction_data();
 					}
 
-					invoke_element(sdata, actionNode, actionData, actionNumber, invokeFunction);
+					invoke_element(context, sdata, actionNode, actionData, actionNumber, invokeFunction);
 					logger.info("Execute " + action_tag + " " + action + " with " + actionData);
 				} else {
 
-					invoke_element(sdata, actionNode, actionNode.getAction_data(), actionNumber, invokeFunction);
+					invoke_element(context, sdata, actionNode, actionNode.getAction_data(), actionNumber, invokeFunction);
 					logger.info("Execute " + action_tag + " " + action);
 				}
 
 				if (actionNode.getNodeType() != NodeType.CONTROL) {
-					setActive(actionNode);
+					setActive(context, actionNode);
 				}
 
 				// in case action leads to somewhere, update the stack
 				String leadsToNodeString = actionNode.getLeadsto();
 				if (leadsToNodeString != null) {
 					GraphNode leadsToNode = graphGenerator.getNodeByKey(leadsToNodeString);
-					setActive(leadsToNode);
+					setActive(context, leadsToNode);
 				}
 			}
 		}
 		// add closing asserts
-		addClosingAssert(sdata, specName);
+		addClosingAssert(context, sdata, specName);
 
 		return sdata;
 	}
 
-	private void lightenStack(NodeType nodeType) {
+	private void lightenStack(GenerationContext context, NodeType nodeType) {
+		Stack<GraphNode> stack = context.getStack();
 		while (!stack.isEmpty() && GeneratorUtilities.getNodeType(stack.peek().getNodeType()) >= GeneratorUtilities
 				.getNodeType(nodeType)) {
 			GraphNode popedNode = stack.pop();
 			logger.info("Popped " + popedNode);
 		}
 		if (ConfigReader.debugMode) {
-			checkStackState();
+			checkStackState(context);
 		}
 	}
 
-	private void checkStackState() {
+	private void checkStackState(GenerationContext context) {
 		logger.debug("running in debug mode, checking stack");
 		int lastSeen = -1;
-		for (GraphNode node : stack) {
+		for (GraphNode node : context.getStack()) {
 			int current = GeneratorUtilities.getNodeType(node.getNodeType());
 			if (lastSeen >= current) {
 				throw new InvalidStackStateException();
@@ -520,60 +454,61 @@ public class TestGenerator {
 
 	}
 
-	private void setActive(GraphNode graphNode) {
+	private void setActive(GenerationContext context, GraphNode graphNode) {
 
 		if (graphNode.getNodeType() == NodeType.CONTROL) {
 			return;
 		}
 
-		JFieldVar pageVariable = definedPages.get(graphNode);
+		JFieldVar pageVariable = context.getDefinedPages().get(graphNode);
 		if (graphNode.getNodeType() == NodeType.PAGE) {
-			if (pageVariable != activePageVariable) {
-				activePageVariable = definedPages.get(graphNode);
-				stack.clear();
+			if (pageVariable != context.getActivePageVariable()) {
+				context.setActivePageVariable(context.getDefinedPages().get(graphNode));
+				context.getStack().clear();
 			}
 			return;
 		}
 
-		lightenStack(graphNode.getNodeType());
+		lightenStack(context, graphNode.getNodeType());
 
 		logger.info("Pushed to stack " + graphNode);
-		stack.push(graphNode);
-		logger.info("Contents of stack " + stack);
+		context.getStack().push(graphNode);
+		logger.info("Contents of stack " + context.getStack());
 	}
 
-	private ScaffolingData generatePostCondition(Spec spec, JCodeModel codeModel, JDefinedClass definedClass,
-			State then, String methodName) {
-		ScaffolingData sdata = createMethodScaffolding(codeModel, definedClass, methodName, true, spec.getName());
+	private ScaffolingData generatePostCondition(GenerationContext context, Spec spec, JCodeModel codeModel,
+			JDefinedClass definedClass, State then, String methodName) {
+		ScaffolingData sdata = createMethodScaffolding(context, codeModel, definedClass, methodName, true,
+				spec.getName());
 
-		GraphNode pageNode = usedPages.get(graphGenerator.getNodeByKey(then.getScreen()).getName());
-		setActive(pageNode);
+		GraphNode pageNode = context.getUsedPages().get(graphGenerator.getNodeByKey(then.getScreen()).getName());
+		setActive(context, pageNode);
 		// assert that we are on page
-		assert_element(sdata, pageNode.getImplictAssertions().get(0));
+		assert_element(context, sdata, pageNode.getImplictAssertions().get(0));
 
 		GraphNode screenNode = graphGenerator.getNodeByKey(then.getScreen());
 		// assert that we are on screen
-		if (needsUpdatingScreen(screenNode)) {
-			setActive(screenNode);
+		if (needsUpdatingScreen(context, screenNode)) {
+			setActive(context, screenNode);
 		}
 
-		assert_element(sdata, screenNode, null, null, defaultElementNumber, false);
+		assert_element(context, sdata, screenNode, null, null, defaultElementNumber, false);
 
 		ExplicitAssertion explicitAssertion = then.getParsedAssertion();
 		if (explicitAssertion != null) {
-			generateExplicitAssertions(sdata, explicitAssertion);
+			generateExplicitAssertions(context, sdata, explicitAssertion);
 		}
 
 		// add closing asserts
-		addClosingAssert(sdata, spec.getName());
+		addClosingAssert(context, sdata, spec.getName());
 
 		return sdata;
 
 	}
 
-	private boolean needsUpdatingScreen(GraphNode screenNode) {
+	private boolean needsUpdatingScreen(GenerationContext context, GraphNode screenNode) {
 
-		for (GraphNode node : stack) {
+		for (GraphNode node : context.getStack()) {
 			if (node == screenNode) {
 				return false;
 			}
@@ -582,12 +517,13 @@ public class TestGenerator {
 		return true;
 	}
 
-	private void generateExplicitAssertions(ScaffolingData sdata, ExplicitAssertion parsedEXplicit) {
+	private void generateExplicitAssertions(GenerationContext context, ScaffolingData sdata,
+			ExplicitAssertion parsedEXplicit) {
 
 		for (Clause clause : parsedEXplicit.getclauses()) {
 			for (Literal literal : clause.getLiterals()) {
 				logger.info("explicit assertion :  " + literal);
-				assert_element(sdata, literal.getNode(), literal.getAction(), literal.getTextData(),
+				assert_element(context, sdata, literal.getNode(), literal.getAction(), literal.getTextData(),
 						literal.getLiteral_no(), literal.isNegation());
 			}
 
@@ -595,34 +531,65 @@ public class TestGenerator {
 
 	}
 
-	private void assert_element(ScaffolingData sdata, String functionName) {
-		JInvocation assertStatement = sdata.getBlock().invoke(sdata.getAssertVar(), "assertTrue");
+	private void assert_element(GenerationContext context, ScaffolingData sdata, String functionName) {
+		JFieldVar activePageVariable = context.getActivePageVariable();
 		JExpression getUrlExpr = JExpr.invoke(activePageVariable, "getUrl");
-		JExpression atPageExpr = JExpr.invoke(functionName).arg(getUrlExpr);
-		assertStatement.arg(atPageExpr);
+		String pageName = context.getFieldVarToNodeMap().get(activePageVariable).getName();
+		addCheck(sdata, pageName, functionName, JExpr._null(), getUrlExpr, defaultElementNumber, true);
 	}
 
-	private void assert_element(ScaffolingData sdata, GraphNode activeNode, String specAssertFunction,
-			String specAssertData, String elementNumber, boolean isNegation) {
+	/**
+	 * Adds a check to the assertion batch of a method, starting a batch if
+	 * needed. The checks are made together when the batch is evaluated.
+	 */
+	private void addCheck(ScaffolingData sdata, String node, String function, JExpression locator,
+			JExpression data, String elementNumber, boolean expected) {
+		if (sdata.getBatchVar() == null) {
+			JClass batchClass = classGenerator.getAssertionBatchClass();
+			String name = "checks" + (sdata.getBatchCount() + 1);
+			sdata.startBatch(sdata.getBlock().decl(batchClass, name, JExpr._new(batchClass).arg(JExpr._this())));
+		}
+		sdata.getBlock().invoke(sdata.getBatchVar(), "add").arg(function).arg(locator).arg(data).arg(elementNumber)
+				.arg(JExpr.lit(expected));
+		sdata.getBatchExpectations().add(expected);
+		sdata.getBatchNodes().add(node);
+	}
 
-		String assertMethod = "assertTrue";
-		if (isNegation) {
-			assertMethod = "assertFalse";
+	/**
+	 * Evaluates the pending assertion batch of a method, if any, and soft
+	 * asserts each of its results. Called before anything that may change the
+	 * page.
+	 */
+	private void evaluateChecks(ScaffolingData sdata) {
+		JVar batchVar = sdata.getBatchVar();
+		if (batchVar == null) {
+			return;
 		}
+		String nodes = StringUtils.join(sdata.getBatchNodes(), ",");
+		beginStep(sdata, "assertion", nodes, "evaluate", NO_ELEMENT).invoke(batchVar, "evaluate");
+		List<Boolean> expectations = sdata.getBatchExpectations();
+		for (int idx = 0; idx < expectations.size(); idx++) {
+			String assertMethod = expectations.get(idx) ? "assertTrue" : "assertFalse";
+			sdata.getBlock().invoke(sdata.getAssertVar(), assertMethod).arg(batchVar.invoke("get").arg(JExpr.lit(idx)));
+		}
+		sdata.endBatch();
+	}
 
-		JInvocation assertStatement = sdata.getBlock().invoke(sdata.getAssertVar(), assertMethod);
+	private void assert_element(GenerationContext context, ScaffolingData sdata, GraphNode activeNode,
+			String specAssertFunction, String specAssertData, String elementNumber, boolean isNegation) {
+		JFieldVar activePageVariable = context.getActivePageVariable();
 
 		logger.info("asserting for element " + activeNode);
 		JExpression argumentExpr = null;
 		boolean flag = true;
 		GraphNode lastNodePoped = null;
-		for (GraphNode stackNode : stack) {
+		for (GraphNode stackNode : context.getStack()) {
 			if (stackNode == activeNode) {
 				break;
 			}
 			String getterName = GeneratorUtilities.getGetterName(stackNode.getName());
 			if (flag) {
-				checkInvocation(activePageVariable, getterName);
+				checkInvocation(context, activePageVariable, getterName);
 				argumentExpr = JExpr.invoke(activePageVariable, getterName);
 				flag = false;
 			} else {
@@ -634,7 +601,7 @@ public class TestGenerator {
 		}
 		String getterName = GeneratorUtilities.getGetterName(activeNode.getName());
 		if (flag) {
-			checkInvocation(activePageVariable, getterName);
+			checkInvocation(context, activePageVariable, getterName);
 			argumentExpr = JExpr.invoke(activePageVariable, getterName);
 		}
 
@@ -649,13 +616,12 @@ public class TestGenerator {
 			specAssertFunction = activeNode.getImplictAssertions().get(0);
 		}
 
-		JExpression assertExpr = null;
+		JExpression dataExpr = JExpr._null();
 		if (requiresDataArgument(specAssertFunction)) {
-			assertExpr = JExpr.invoke(specAssertFunction).arg(argumentExpr).arg(specAssertData).arg(elementNumber);
-		} else {
-			assertExpr = JExpr.invoke(specAssertFunction).arg(argumentExpr).arg(elementNumber);
+			dataExpr = JExpr.lit(specAssertData);
 		}
-		assertStatement.arg(assertExpr);
+		addCheck(sdata, activeNode.getName(), specAssertFunction, argumentExpr, dataExpr, elementNumber,
+				!isNegation);
 	}
 
 	private void checkInvocation(GraphNode lastNodePoped, String getterName) {
@@ -671,8 +637,8 @@ public class TestGenerator {
 
 	}
 
-	private void checkInvocation(JFieldVar varName, String getterName) {
-		GraphNode activeNode = fieldVarToNodeMap.get(varName);
+	private void checkInvocation(GenerationContext context, JFieldVar varName, String getterName) {
+		GraphNode activeNode = context.getFieldVarToNodeMap().get(varName);
 		if (!classGenerator.containsGetter(activeNode, getterName)) {
 			String message = activeNode.getName() + " does not have any getter named " + getterName;
 			throw new InvalidPathException(message);
@@ -689,18 +655,21 @@ public class TestGenerator {
 		return false;
 	}
 
-	private void invoke_element(ScaffolingData sdata, GraphNode activeNode, String actionData, String elementNumber,
-			String invokeFunction) {
-		JInvocation invokeStatement = sdata.getBlock().invoke(invokeFunction);
+	private void invoke_element(GenerationContext context, ScaffolingData sdata, GraphNode activeNode,
+			String actionData, String elementNumber, String invokeFunction) {
+		evaluateChecks(sdata);
+		JFieldVar activePageVariable = context.getActivePageVariable();
+		JBlock step = beginStep(sdata, "action", activeNode.getName(), invokeFunction, elementNumber);
+		JInvocation invokeStatement = step.invoke(invokeFunction);
 		JExpression argumentExpr = null;
 		boolean flag = true;
 		GraphNode lastNodePoped = null;
-		for (GraphNode stackNode : stack) {
+		for (GraphNode stackNode : context.getStack()) {
 			if (stackNode == activeNode) {
 				break;
 			}
 			if (flag) {
-				checkInvocation(activePageVariable, GeneratorUtilities.getGetterName(stackNode.getName()));
+				checkInvocation(context, activePageVariable, GeneratorUtilities.getGetterName(stackNode.getName()));
 				argumentExpr = JExpr.invoke(activePageVariable, GeneratorUtilities.getGetterName(stackNode.getName()));
 				flag = false;
 			} else {
@@ -711,7 +680,7 @@ public class TestGenerator {
 		}
 		String getterName = GeneratorUtilities.getGetterName(activeNode.getName());
 		if (flag) {
-			checkInvocation(activePageVariable, getterName);
+			checkInvocation(context, activePageVariable, getterName);
 			argumentExpr = JExpr.invoke(activePageVariable, getterName);
 
 		} else {
@@ -727,33 +696,62 @@ public class TestGenerator {
 
 		logger.info("Invoked " + activeNode);
 		if (activeNode.getWait_time() != null) {
-			generateWait(sdata, activeNode.getWait_time());
+			generateWait(context, sdata, activeNode.getWait_time(), activeNode.getName());
 		}
 
-		sdata.getBlock().invoke(outVar, "println")
+		sdata.getBlock().invoke(context.getOutVar(), "println")
 				.arg("=============" + invokeFunction + " " + activeNode.getName() + "=============");
 
 	}
 
-	private void generateWait(ScaffolingData sdata, String wait) {
+	private void generateWait(GenerationContext context, ScaffolingData sdata, String wait, String node) {
 
 		if (wait != null) {
 			if (wait.toLowerCase().equals("short")) {
-				sdata.getBlock().invoke(outVar, "println")
+				sdata.getBlock().invoke(context.getOutVar(), "println")
 						.arg("=============" + "Waiting for a short interval" + "=============");
-				sdata.getBlock().invoke("waitForAShortWhile");
+				beginStep(sdata, "wait", node, "waitForAShortWhile", NO_ELEMENT).invoke("waitForAShortWhile");
 			} else if (wait.toLowerCase().equals("normal")) {
-				sdata.getBlock().invoke(outVar, "println")
+				sdata.getBlock().invoke(context.getOutVar(), "println")
 						.arg("=============" + "Waiting for a while " + "=============");
-				sdata.getBlock().invoke("waitForAWhile");
+				beginStep(sdata, "wait", node, "waitForAWhile", NO_ELEMENT).invoke("waitForAWhile");
 			} else if (wait.toLowerCase().equals("long")) {
-				sdata.getBlock().invoke(outVar, "println")
+				sdata.getBlock().invoke(context.getOutVar(), "println")
 						.arg("=============" + "Waiting for a long interval" + "=============");
-				sdata.getBlock().invoke("waitForALongWhile");
+				beginStep(sdata, "wait", node, "waitForALongWhile", NO_ELEMENT).invoke("waitForALongWhile");
 			}
 		}
 	}
 
+	/**
+	 * Opens a step of the generated test, recorded as a flight recorder event
+	 * when the test runs. The statements of the step go in the returned block,
+	 * which is wrapped in a try so the step is closed even when it fails. When
+	 * step events are off the method block itself is returned.
+	 *
+	 * @param sdata
+	 *            the scaffolding data of the method
+	 * @param kind
+	 *            action, assertion or wait
+	 * @param node
+	 *            the node the step works on
+	 * @param action
+	 *            the action type
+	 * @param elementNumber
+	 *            the element index, or NO_ELEMENT
+	 * @return the block the step's statements go in
+	 */
+	private JBlock beginStep(ScaffolingData sdata, String kind, String node, String action, String elementNumber) {
+		if (!ConfigReader.stepEvents) {
+			return sdata.getBlock();
+		}
+		sdata.getBlock().invoke("beginStep").arg(sdata.getSpecName()).arg(node).arg(kind).arg(action)
+				.arg(elementNumber);
+		JTryBlock step = sdata.getBlock()._try();
+		step._finally().invoke("endStep");
+		return step.body();
+	}
+
 	private Map<String, GraphNode> getUsedPages(GraphPath<GraphNode, DefaultEdge> path, Spec spec) {
 		Map<String, GraphNode> usedPages = new HashMap<>();
 
@@ -784,29 +782,45 @@ System.out.println("last page is " + lastPage);
 
 	}
 
-	private void generateFieldVariables(JDefinedClass definedClass) {
+	private void generateFieldVariables(GenerationContext context, JDefinedClass definedClass) {
 
-		for (String key : usedPages.keySet()) {
-			GraphNode pageNode = usedPages.get(key);
+		for (String key : context.getUsedPages().keySet()) {
+			GraphNode pageNode = context.getUsedPages().get(key);
 
-			if (!definedPages.containsKey(pageNode)) {
+			if (!context.getDefinedPages().containsKey(pageNode)) {
 				JDefinedClass pageClass = classGenerator.getNodeClassMap().get(pageNode);
 
 				JFieldVar pageField = definedClass.field(JMod.FINAL, pageClass, "field" + pageNode.getName(),
 						JExpr._new(pageClass));
-				definedPages.put(pageNode, pageField);
+				context.getDefinedPages().put(pageNode, pageField);
 
-				fieldVarToNodeMap.put(pageField, pageNode);
+				context.getFieldVarToNodeMap().put(pageField, pageNode);
 
 				logger.info("adding field variable " + pageField.name());
 			}
 		}
 	}
 
-	private ScaffolingData generatePrecondition(Spec spec, JCodeModel codeModel, JDefinedClass definedClass,
-			GraphPath<GraphNode, DefaultEdge> path, String methodName) {
+	private ScaffolingData generatePrecondition(GenerationContext context, Spec spec, JCodeModel codeModel,
+			JDefinedClass definedClass, GraphPath<GraphNode, DefaultEdge> path, String methodName)
+			throws IOException {
+
+		ScaffolingData sdata = createMethodScaffolding(context, codeModel, definedClass, methodName, true,
+				spec.getName());
 
-		ScaffolingData sdata = createMethodScaffolding(codeModel, definedClass, methodName, true, spec.getName());
+		// walk the path only if no checkpoint of it can be restored and its
+		// page cannot be opened directly
+		JBlock body = sdata.getBlock();
+		String checkpointKey = null;
+		if (ConfigReader.checkpoints) {
+			checkpointKey = getCheckpointKey(path);
+			JInvocation restore = JExpr.invoke("restoreCheckpoint").arg(checkpointKey);
+			sdata.setBlock(sdata.getBlock()._if(restore.not())._then());
+		}
+		JInvocation fastForward = getFastForward(context, spec);
+		if (fastForward != null) {
+			sdata.setBlock(sdata.getBlock()._if(fastForward.not())._then());
+		}
 
 		// go to homepage
 		sdata.getBlock().invoke("goToHomePage");
@@ -816,74 +830,141 @@ System.out.println("last page is " + lastPage);
 			GraphNode srcNode = graph.getEdgeSource(e);
 			lastNode = graph.getEdgeTarget(e);
 
-			setActive(srcNode);
+			setActive(context, srcNode);
 
 			if (srcNode.getNodeType() == NodeType.PAGE) {
 
-				assert_element(sdata, srcNode.getImplictAssertions().get(0));
+				assert_element(context, sdata, srcNode.getImplictAssertions().get(0));
 
 			} else if (srcNode.getNodeType() == NodeType.SCREEN) {
 
-				assert_element(sdata, srcNode, null, null, defaultElementNumber, false);
+				assert_element(context, sdata, srcNode, null, null, defaultElementNumber, false);
 
 			} else if (srcNode.getNodeType() == NodeType.APP) {
 
-				assert_element(sdata, srcNode, null, null, defaultElementNumber, false);
+				assert_element(context, sdata, srcNode, null, null, defaultElementNumber, false);
 
 			} else {
 
-				invoke_element(sdata, srcNode, srcNode.getAction_data(), defaultElementNumber,
+				invoke_element(context, sdata, srcNode, srcNode.getAction_data(), defaultElementNumber,
 						srcNode.getAction_type());
 			}
 		}
+		evaluateChecks(sdata);
+		sdata.setBlock(body);
 
-		setActive(lastNode);
+		setActive(context, lastNode);
 
-		assert_element(sdata, lastNode, null, null, defaultElementNumber, false);
+		assert_element(context, sdata, lastNode, null, null, defaultElementNumber, false);
 
 		// ExplicitAssertion eassert = spec.getGiven().getParsedAssertion();
 		// for (Clause clause : eassert.getclauses()) {
 		// for(Literal literal : clause.getLiterals()) {
-		// assert_element(sdata, literal.getNode(), literal.getAction(),
+		// assert_element(context, sdata, literal.getNode(), literal.getAction(),
 		// literal.getTextData(), defaultElementNumber);
 		// }
 		// }
 
 		// add closing asserts
-		addClosingAssert(sdata, spec.getName());
+		addClosingAssert(context, sdata, spec.getName());
+
+		// only a verified end state becomes a checkpoint
+		if (checkpointKey != null) {
+			sdata.getBlock().invoke("saveCheckpoint").arg(checkpointKey);
+		}
 
 		return sdata;
 	}
 
+	/**
+	 * Gets the checkpoint key of a path, the same for every test walking it.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the key
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private String getCheckpointKey(GraphPath<GraphNode, DefaultEdge> path) throws IOException {
+		List<String> names = new ArrayList<>();
+		for (GraphNode node : path.getVertexList()) {
+			names.add(node.getName());
+		}
+		return GenerationManifest.hash(names.toArray(new String[names.size()])).substring(0, 16);
+	}
+
+	/**
+	 * Builds the fastForward call that opens the page of the given screen
+	 * directly, if fast-forwarding is on, the page declares its state and the
+	 * given screen is the one the page opens on. Other screens are reached by
+	 * steps within the page, which opening the page does not take.
+	 *
+	 * @return the call, or null if the path has to be replayed
+	 */
+	private JInvocation getFastForward(GenerationContext context, Spec spec) {
+		if (!ConfigReader.fastForward) {
+			return null;
+		}
+		String pageKey = graphGenerator.getScreenToPage().get(spec.getGiven().getScreen());
+		GraphNode pageNode = graphGenerator.getNodeByKey(pageKey);
+		GraphNode screenNode = graphGenerator.getNodeByKey(spec.getGiven().getScreen());
+		JFieldVar pageVariable = context.getDefinedPages().get(pageNode);
+		if (pageNode.getState() == null || pageVariable == null) {
+			return null;
+		}
+		String screenGetter = GeneratorUtilities.getGetterName(screenNode.getName());
+		if (!screenNode.isDefaultComponent() || !classGenerator.containsGetter(pageNode, screenGetter)) {
+			logger.info("Given " + screenNode + " is not the default screen of " + pageNode + ", replaying it");
+			return null;
+		}
+
+		JInvocation fastForward = JExpr.invoke("fastForward").arg(JExpr.invoke(pageVariable, "getUrl"))
+				.arg(JExpr.invoke(JExpr.invoke(pageVariable, screenGetter), "getId"));
+		for (String kind : pageNode.getState().keySet()) {
+			if (!FAST_FORWARD_STATE.contains(kind)) {
+				throw new InvalidModelException(pageNode + " declares unknown state " + kind);
+			}
+			Map<String, String> entries = pageNode.getState().get(kind);
+			if (entries != null) {
+				for (String name : entries.keySet()) {
+					fastForward.arg(kind).arg(name).arg(String.valueOf(entries.get(name)));
+				}
+			}
+		}
+		logger.info("Given " + spec.getGiven().getScreen() + " fast-forwards to " + pageNode);
+		return fastForward;
+	}
+
 	private void call(ScaffolingData sdata, ScaffolingData givenSdata) {
 
 		sdata.getBlock().invoke(givenSdata.getMethod());
 	}
 
-	private ScaffolingData generateTestCode(JCodeModel codeModel, JDefinedClass definedClass, ScaffolingData sdata,
-			Spec spec) {
+	private ScaffolingData generateTestCode(GenerationContext context, JCodeModel codeModel,
+			JDefinedClass definedClass, ScaffolingData sdata, Spec spec) {
 
 		// generate WHEN
 		String methodName = "when";
-		if (specChainCounter > 0) {
-			methodName += "_" + specChainCounter;
+		if (context.getSpecChainCounter() > 0) {
+			methodName += "_" + context.getSpecChainCounter();
 		}
-		ScaffolingData whenSdata = generateSpecActions(codeModel, definedClass, spec.getWhen(), methodName,
+		ScaffolingData whenSdata = generateSpecActions(context, codeModel, definedClass, spec.getWhen(), methodName,
 				spec.getName());
 
 		call(sdata, whenSdata);
 		logger.info("=========== action generated ===========");
 
 		// generate WAIT
-		generateWait(sdata, spec.getWait());
+		generateWait(context, sdata, spec.getWait(), spec.getName());
 		logger.info("=========== wait generated ===========");
 
 		// generate THEN
 		methodName = "then";
-		if (specChainCounter > 0) {
-			methodName += "_" + specChainCounter;
+		if (context.getSpecChainCounter() > 0) {
+			methodName += "_" + context.getSpecChainCounter();
 		}
-		ScaffolingData thenSdata = generatePostCondition(spec, codeModel, definedClass, spec.getThen(), methodName);
+		ScaffolingData thenSdata = generatePostCondition(context, spec, codeModel, definedClass, spec.getThen(),
+				methodName);
 
 		call(sdata, thenSdata);
 		logger.info("=========== post condtion generated ===========");
@@ -891,8 +972,8 @@ System.out.println("last page is " + lastPage);
 		return sdata;
 	}
 
-	private void generatePostSpec(JCodeModel codeModelOrg, JDefinedClass definedClassOrg, ScaffolingData sdataOrg,
-			String post, State thenState)
+	private void generatePostSpec(GenerationContext context, JCodeModel codeModel, JDefinedClass definedClassOrg,
+			ScaffolingData sdataOrg, String post, State thenState, ChainNode parent)
 			throws InvalidKeySpecException, IllegalAccessException, InvocationTargetException,
 			JClassAlreadyExistsException, CloneNotSupportedException, ClassNotFoundException, IOException {
 
@@ -910,119 +991,75 @@ System.out.println("last page is " + lastPage);
 		logger.info("Chaining with " + postSpec.getName());
 
 		// used for method naming - should use something better
-		specChainCounter += 1;
+		context.incrementSpecChainCounter();
 
 		// get any additional pages used in the postSpec
 		Map<String, GraphNode> pagesUsedPost = getUsedPages(null, postSpec);
-		usedPages.putAll(pagesUsedPost);
+		context.getUsedPages().putAll(pagesUsedPost);
 
 		// get a new name for the chained test class
 		String newFullname = definedClassOrg.fullName() + GeneratorUtilities.firstLetterCaptial(postSpec.getName());
-		logger.info("Creating class " + newFullname + " by duplication");
-
-		// clone objects
-		JCodeModel codeModel = cloneCodeModel(codeModelOrg);
-		JDefinedClass definedClass = cloneDefinedClass(definedClassOrg);
-		definedClass.setName(definedClassOrg.name() + GeneratorUtilities.firstLetterCaptial(postSpec.getName()));
-
-		// show the class, as the parent would have been hidden
-		definedClass.show();
-
-		// add new class to package
-		codeModel.addClass(newFullname, definedClass);
-
-		// get a reference to the last method
-		JMethod returnedMethod = definedClass.getMethod(sdataOrg.getMethod().name(), sdataOrg.getMethod().typeParams());
-		if (returnedMethod == null) {
-			throw new InvalidStackStateException("Method not found");
+		logger.info("Creating class " + newFullname + " extending " + definedClassOrg.fullName());
+
+		// the chained class inherits everything generated so far and only adds its own methods
+		JDefinedClass definedClass = codeModel._class(newFullname);
+		definedClass._extends(definedClassOrg);
+
+		// override the last method, so that it goes on with the post specification
+		JMethod returnedMethod = definedClass.method(JMod.PUBLIC, JType.parse(codeModel, "void"),
+				sdataOrg.getMethod().name());
+		returnedMethod._throws(InterruptedException.class);
+		returnedMethod._throws(IOException.class);
+		returnedMethod.annotate(Override.class);
+		if (returnedMethod.name().equals("execute")) {
+			annotateTest(returnedMethod);
 		}
+		returnedMethod.body().invoke(JExpr._super(), sdataOrg.getMethod());
 
 		// create a new method that will call post specification
-		ScaffolingData sdata = createMethodScaffolding(codeModel, definedClass,
+		ScaffolingData sdata = createMethodScaffolding(context, codeModel, definedClass,
 				"post" + GeneratorUtilities.firstLetterCaptial(postSpec.getName()), false, postSpec.getName());
 
-		sdata.getBlock().invoke(outVar, "println")
+		sdata.getBlock().invoke(context.getOutVar(), "println")
 				.arg("=============" + "Post specifcation " + postSpec.getName() + " =============");
 
+		ChainNode node = new ChainNode(definedClass, sdata.getMethod());
+		parent.addChild(node);
+
 		// invoke the post-specification method in the last method
 		returnedMethod.body().invoke(sdata.getMethod());
-		generateFieldVariables(definedClass);
+		generateFieldVariables(context, definedClass);
 
-		sdata = generateTestCode(codeModel, definedClass, sdata, postSpec);
+		sdata = generateTestCode(context, codeModel, definedClass, sdata, postSpec);
 
 		// in case the post specification has post specifications of its own
 		if (postSpec.getPost() != null && postSpec.getPost().size() > 0) {
-
-			// hide this class as its children would be written
-			definedClass.hide();
-
 			for (String postPost : postSpec.getPost()) {
 
 				// save context
-				Stack<GraphNode> originalStack = (Stack<GraphNode>) stack.clone();
-				Map<GraphNode, JFieldVar> originalDefinedPages = new HashMap();
-				originalDefinedPages.putAll(definedPages);
-				JFieldVar originalActivePageVariable = activePageVariable;
-				Map<String, GraphNode> originalUsedPages = new HashMap();
-				originalUsedPages.putAll(usedPages);
+				GenerationContext saved = context.save();
 				logger.info("Saved context");
 
-				generatePostSpec(codeModel, definedClass, sdata, postPost, postSpec.getThen());
+				generatePostSpec(context, codeModel, definedClass, sdata, postPost, postSpec.getThen(), node);
 
 				// restore context
-				stack = originalStack;
-				usedPages = originalUsedPages;
-				definedPages = originalDefinedPages;
-				activePageVariable = originalActivePageVariable;
+				context.restore(saved);
 				logger.info("Restored context");
 			}
-		} else {
-			// write class to file
-			writeTestToFile(codeModel, definedClass);
+		} else if (!ConfigReader.executionTree) {
+			// only the last class of a chain is run
+			addTest(context, definedClass);
 		}
 	}
 
-	private JDefinedClass cloneDefinedClass(JDefinedClass jDefinedClass) throws IOException, ClassNotFoundException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		ObjectOutputStream oos = new ObjectOutputStream(bos);
-		oos.writeObject(jDefinedClass);
-		oos.flush();
-		oos.close();
-		bos.close();
-		byte[] byteData = bos.toByteArray();
-
-		ByteArrayInputStream bais = new ByteArrayInputStream(byteData);
-		JDefinedClass copy = (JDefinedClass) new ObjectInputStream(bais).readObject();
-		return copy;
-	}
-
-	private JCodeModel cloneCodeModel(JCodeModel jCodeModel) throws IOException, ClassNotFoundException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		ObjectOutputStream oos = new ObjectOutputStream(bos);
-		oos.writeObject(jCodeModel);
-		oos.flush();
-		oos.close();
-		bos.close();
-		byte[] byteData = bos.toByteArray();
-
-		ByteArrayInputStream bais = new ByteArrayInputStream(byteData);
-		JCodeModel copy = (JCodeModel) new ObjectInputStream(bais).readObject();
-		return copy;
-	}
-
-	private void generateClasses(Spec spec, GraphPath<GraphNode, DefaultEdge> path, String testName)
+	private void generateClasses(GenerationContext context, Spec spec, GraphPath<GraphNode, DefaultEdge> path,
+			String testName)
 			throws IOException, JClassAlreadyExistsException, InvalidKeySpecException, IllegalAccessException,
 			InvocationTargetException, CloneNotSupportedException, ClassNotFoundException {
 		if (path == null) {
 			throw new InvalidPathException();
 		}
 
-		definedPages = new HashMap<>();
-		fieldVarToNodeMap = new HashMap<>();
-		stack = new Stack<GraphNode>();
-		activePageVariable = null;
-		specChainCounter = 0;
-
 		logger.info("===| Generating class for " + GeneratorUtilities.firstLetterCaptial(testName));
 		JCodeModel codeModel = new JCodeModel();
 		String packageName = "io.typeset.sphinx.tests";
@@ -1030,54 +1067,102 @@ System.out.println("last page is " + lastPage);
 		JDefinedClass definedClass = codeModel._class(className);
 		definedClass._extends(classGenerator.getActionClass());
 
-		outVar = codeModel.ref(System.class).staticRef("out");
-		usedPages = getUsedPages(path, spec);
+		context.setOutVar(codeModel.ref(System.class).staticRef("out"));
+		context.setUsedPages(getUsedPages(path, spec));
 
 		// generate field variables
-		generateFieldVariables(definedClass);
+		generateFieldVariables(context, definedClass);
 
 		// generate method scaffolding
-		ScaffolingData sdata = createMethodScaffolding(codeModel, definedClass, "execute", false, spec.getName());
+		ScaffolingData sdata = createMethodScaffolding(context, codeModel, definedClass, "execute", false,
+				spec.getName());
 
 		// add testng annotation
-		JMethod method = sdata.getMethod();
-		method.annotate(org.testng.annotations.Test.class).param("retryAnalyzer", classGenerator.getRetryClass());
-		;
+		annotateTest(sdata.getMethod());
 
 		// generate GIVEN
-		ScaffolingData givenSdata = generatePrecondition(spec, codeModel, definedClass, path, "given");
+		ScaffolingData givenSdata = generatePrecondition(context, spec, codeModel, definedClass, path, "given");
 
 		call(sdata, givenSdata);
 		logger.info("=========== pre condtion generated ===========");
 
-		sdata = generateTestCode(codeModel, definedClass, sdata, spec);
+		sdata = generateTestCode(context, codeModel, definedClass, sdata, spec);
 
 		if (spec.getPost() == null || spec.getPost().size() == 0) {
-			writeTestToFile(codeModel, definedClass);
+			addTest(context, definedClass);
 		} else {
-			// hide this class as its children would be written
-			definedClass.hide();
+			ChainNode root = new ChainNode(definedClass, sdata.getMethod());
 			for (String post : spec.getPost()) {
 
 				logger.info("Generating chained tests for " + post);
 
 				// save context
-				Stack<GraphNode> originalStack = (Stack<GraphNode>) stack.clone();
-				Map<GraphNode, JFieldVar> originalDefinedPages = new HashMap();
-				originalDefinedPages.putAll(definedPages);
-				JFieldVar originalActivePageVariable = activePageVariable;
-				Map<String, GraphNode> originalUsedPages = new HashMap();
-				originalUsedPages.putAll(usedPages);
+				GenerationContext saved = context.save();
 
-				generatePostSpec(codeModel, definedClass, sdata, post, spec.getThen());
+				generatePostSpec(context, codeModel, definedClass, sdata, post, spec.getThen(), root);
 
 				// restore context
-				stack = originalStack;
-				usedPages = originalUsedPages;
-				definedPages = originalDefinedPages;
-				activePageVariable = originalActivePageVariable;
+				context.restore(saved);
+			}
+
+			if (ConfigReader.executionTree) {
+				generateExecutionTree(context, codeModel, root);
 			}
 		}
+
+		// write the test class together with every chained class
+		writeTestToFile(context, codeModel);
+	}
+
+	/**
+	 * Generates a single test running a spec and its whole post-spec chain
+	 * tree: every prefix runs once, and the browser state reached at a branch
+	 * point is restored before each sibling branch. A failing branch does not
+	 * stop its siblings; the failures are reported together at the end.
+	 */
+	private void generateExecutionTree(GenerationContext context, JCodeModel codeModel, ChainNode root)
+			throws JClassAlreadyExistsException {
+		JDefinedClass treeClass = codeModel._class(root.getDefinedClass().fullName() + "Tree");
+		treeClass._extends(root.getDefinedClass());
+		logger.info("Creating execution tree " + treeClass.fullName());
+
+		JMethod method = treeClass.method(JMod.PUBLIC, JType.parse(codeModel, "void"), root.getMethod().name());
+		method._throws(InterruptedException.class);
+		method._throws(IOException.class);
+		method.annotate(Override.class);
+		annotateTest(method);
+
+		JBlock block = method.body();
+		block.invoke(JExpr._super(), root.getMethod());
+		generateBranches(codeModel, block, root);
+		block.invoke("assertBranches");
+
+		addTest(context, treeClass);
+	}
+
+	private void generateBranches(JCodeModel codeModel, JBlock block, ChainNode node) {
+		List<ChainNode> children = node.getChildren();
+		if (children.size() > 1) {
+			block.invoke("pushBrowserState");
+		}
+		for (int idx = 0; idx < children.size(); idx++) {
+			ChainNode child = children.get(idx);
+			if (idx > 0) {
+				block.invoke("restoreBrowserState");
+			}
+
+			// run only the steps of the chained spec, then its own branches
+			JTryBlock tryBlock = block._try();
+			tryBlock.body().invoke(JExpr._new(child.getDefinedClass()), child.getMethod());
+			generateBranches(codeModel, tryBlock.body(), child);
+
+			JCatchBlock catchBlock = tryBlock._catch(codeModel.ref(Throwable.class));
+			JVar failure = catchBlock.param("failure");
+			catchBlock.body().invoke("branchFailed").arg(child.getDefinedClass().name()).arg(failure);
+		}
+		if (children.size() > 1) {
+			block.invoke("popBrowserState");
+		}
 	}
 
 	public Map<String, String> generateTest(List<Spec> specList)
@@ -1087,19 +1172,155 @@ System.out.println("last page is " + lastPage);
 			logger.info("Spec list is empty, not generating tests");
 		}
 
-		for (Spec spec : specList) {
+		// only specs whose inputs changed since the last run are generated
+		Map<Spec, String> specHashes = new HashMap<>();
+		List<Spec> changedSpecs = new ArrayList<>();
+		List<Callable<GenerationContext>> tasks = new ArrayList<>();
+		for (final Spec spec : specList) {
+			String specKey = specKeys.get(spec);
+			String specHash = getSpecHash(specKey);
+			specHashes.put(spec, specHash);
+			if (manifest.isUpToDate(specKey, specHash)) {
+				logger.info("Spec " + specKey + " unchanged, reusing its tests");
+				continue;
+			}
+			changedSpecs.add(spec);
+			tasks.add(new Callable<GenerationContext>() {
+				@Override
+				public GenerationContext call() throws Exception {
+					return generateTest(spec);
+				}
+			});
+		}
 
-			GraphPath<GraphNode, DefaultEdge> path = getFeasiblePath(spec);
-			logger.info("Resolving spec " + spec);
-			if (path != null) {
-				logger.info("Feasible path found " + path);
-				generateClasses(spec, path, spec.getName());
+		ForkJoinPool pool = new ForkJoinPool();
+		logger.info("Generating " + tasks.size() + " of " + specList.size() + " specs on " + pool.getParallelism()
+				+ " threads");
+		try {
+			List<Future<GenerationContext>> results = pool.invokeAll(tasks);
+
+			// merge in spec order, so the output does not depend on scheduling
+			for (Spec spec : specList) {
+				String specKey = specKeys.get(spec);
+				int idx = changedSpecs.indexOf(spec);
+				if (idx < 0) {
+					generatedTests.putAll(manifest.getTests(specKey));
+					continue;
+				}
+				GenerationContext context = getResult(results.get(idx));
+				deleteStaleFiles(manifest.getFiles(specKey), context.getWrittenFiles());
+				manifest.put(specKey, specHashes.get(spec), context.getGeneratedTests(), context.getWrittenFiles());
+				generatedTests.putAll(context.getGeneratedTests());
+			}
+		} finally {
+			pool.shutdown();
+		}
 
-			} else {
-				logger.info("No feasible path found");
+		// drop the tests of specs that were removed or are no longer enabled
+		Set<String> specKeysRun = new HashSet<>();
+		for (Spec spec : specList) {
+			specKeysRun.add(specKeys.get(spec));
+		}
+		for (String specKey : manifest.getSpecs()) {
+			if (!specKeysRun.contains(specKey)) {
+				deleteStaleFiles(manifest.getFiles(specKey), new ArrayList<String>());
+				manifest.remove(specKey);
 			}
 		}
+		manifest.save();
+
+		logger.info("Feasible path cache : " + pathCache);
 		return generatedTests;
 	}
 
+	private GenerationContext generateTest(Spec spec)
+			throws IOException, JClassAlreadyExistsException, InvalidKeySpecException, IllegalAccessException,
+			InvocationTargetException, CloneNotSupportedException, ClassNotFoundException {
+		GenerationContext context = new GenerationContext();
+
+		GraphPath<GraphNode, DefaultEdge> path = getFeasiblePath(spec);
+		logger.info("Resolving spec " + spec);
+		if (path != null) {
+			logger.info("Feasible path found " + path);
+			generateClasses(context, spec, path, spec.getName());
+
+		} else {
+			logger.info("No feasible path found");
+		}
+		return context;
+	}
+
+	/**
+	 * Hashes the inputs of a spec: its own file and those of its post-spec chain.
+	 *
+	 * @param specKey
+	 *            the spec file name
+	 * @return the hash
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private String getSpecHash(String specKey) throws IOException {
+		List<File> inputs = new ArrayList<>();
+		collectSpecInputs(specKey, new HashSet<String>(), inputs);
+		return GenerationManifest.hash(inputs.toArray(new File[inputs.size()]));
+	}
+
+	private void collectSpecInputs(String specKey, Set<String> seen, List<File> inputs) {
+		if (!seen.add(specKey)) {
+			return;
+		}
+		String source = specSources.get(specKey);
+		// a missing post spec still takes part, so adding it later regenerates the chain
+		inputs.add(new File(source == null ? specKey : source));
+		Spec spec = specMap.get(specKey);
+		if (spec != null && spec.getPost() != null) {
+			for (String post : spec.getPost()) {
+				collectSpecInputs(post, seen, inputs);
+			}
+		}
+	}
+
+	private void deleteStaleFiles(List<String> previousFiles, List<String> currentFiles) {
+		for (String previous : previousFiles) {
+			if (!currentFiles.contains(previous)) {
+				File stale = new File(outputDir + File.separator + "java", previous);
+				logger.info("Deleting stale test " + stale);
+				stale.delete();
+			}
+		}
+	}
+
+	private GenerationContext getResult(Future<GenerationContext> result)
+			throws IOException, JClassAlreadyExistsException, InvalidKeySpecException, IllegalAccessException,
+			InvocationTargetException, CloneNotSupportedException, ClassNotFoundException {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while generating tests");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof JClassAlreadyExistsException) {
+				throw (JClassAlreadyExistsException) cause;
+			} else if (cause instanceof InvalidKeySpecException) {
+				throw (InvalidKeySpecException) cause;
+			} else if (cause instanceof IllegalAccessException) {
+				throw (IllegalAccessException) cause;
+			} else if (cause instanceof InvocationTargetException) {
+				throw (InvocationTargetException) cause;
+			} else if (cause instanceof CloneNotSupportedException) {
+				throw (CloneNotSupportedException) cause;
+			} else if (cause instanceof ClassNotFoundException) {
+				throw (ClassNotFoundException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
 }
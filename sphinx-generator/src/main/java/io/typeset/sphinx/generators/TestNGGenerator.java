@@ -75,6 +75,11 @@ public class TestNGGenerator {
 		Element rootElement = doc.createElement("suite");
 		doc.appendChild(rootElement);
 		rootElement.setAttribute("name", projectName);
+		if (!ConfigReader.parallel.equals("none")) {
+			// every thread checks out its own browser session
+			rootElement.setAttribute("parallel", ConfigReader.parallel);
+			rootElement.setAttribute("thread-count", String.valueOf(ConfigReader.threadCount));
+		}
 
 		// add listeners
 		Element listeners = doc.createElement("listeners");
@@ -0,0 +1,546 @@
+package io.typeset.sphinx.generators;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.typeset.sphinx.exceptions.InvalidConfigException;
+import io.typeset.sphinx.model.App;
+import io.typeset.sphinx.model.Control;
+import io.typeset.sphinx.model.Model;
+import io.typeset.sphinx.model.Node;
+import io.typeset.sphinx.model.Page;
+import io.typeset.sphinx.model.Screen;
+import io.typeset.sphinx.model.Widget;
+import io.typeset.sphinx.readers.ModelReader;
+
+/**
+ * The Class WorkloadGenerator. Generates a synthetic model, and specs over it,
+ * of any size, to find out how the generator scales. The same seed and
+ * settings always give the same model and specs.
+ *
+ * Every page has screensPerPage screens, every screen controlsPerScreen
+ * controls of its own and appsPerScreen apps, every app widgetsPerApp widgets
+ * and every widget controlsPerWidget controls. A control either stays where it
+ * is (the graph leads it back to its parent) or, with probability
+ * navigationRatio, leads to another screen; of those, backEdgeRatio lead to an
+ * earlier screen and the rest to a later one. Navigating controls get a
+ * precondition on their staying siblings with probability
+ * preconditionDensity, so it can always be satisfied.
+ *
+ * So that every node is reachable from the root page, the first screen of a
+ * page is opened by the page, the second control of every screen leads to the
+ * next screen of its page and that of the last screen leads to the next page.
+ *
+ * There is a spec for each of at most specCount screens, typing into the
+ * screen's first control and moving on to the next screen, chained to the
+ * spec of that screen and so on, at most postChainDepth post specs deep.
+ */
+public class WorkloadGenerator {
+	private static final Logger logger = LogManager.getLogger("WorkloadGenerator");
+
+	private long seed = 1;
+	private int pages = 10;
+	private int screensPerPage = 10;
+	private int controlsPerScreen = 6;
+	private int appsPerScreen = 1;
+	private int widgetsPerApp = 2;
+	private int controlsPerWidget = 4;
+	private double navigationRatio = 0.3;
+	private double backEdgeRatio = 0.2;
+	private double preconditionDensity = 0.25;
+	private int specCount = 100;
+	private int postChainDepth = 2;
+
+	/** The generated model. */
+	private Model model;
+
+	/** The generated specs, by file name. */
+	private Map<String, String> specs;
+
+	/** The control typed into by the spec of every screen. */
+	private String[] textControls;
+
+	/** The control leading from every screen to the next. */
+	private String[] nextControls;
+
+	/**
+	 * Generates the model and the specs.
+	 */
+	public void generate() {
+		if (pages < 1 || screensPerPage < 1 || controlsPerScreen < 2 || controlsPerWidget < 1 || appsPerScreen < 0
+				|| widgetsPerApp < 0 || specCount < 0 || postChainDepth < 0) {
+			throw new InvalidConfigException("Invalid workload size, every screen needs at least two controls");
+		}
+		Random random = new Random(seed);
+		model = generateModel(random);
+		specs = generateSpecs(random);
+		logger.info("Generated " + model.getControls().size() + " controls, " + model.getWidgets().size()
+				+ " widgets, " + model.getApps().size() + " apps, " + model.getScreens().size() + " screens, "
+				+ model.getPages().size() + " pages and " + specs.size() + " specs from seed " + seed);
+	}
+
+	private Model generateModel(Random random) {
+		int screenCount = pages * screensPerPage;
+		textControls = new String[screenCount];
+		nextControls = new String[screenCount];
+
+		Map<String, Control> controls = new LinkedHashMap<>();
+		Map<String, Widget> widgets = new LinkedHashMap<>();
+		Map<String, App> apps = new LinkedHashMap<>();
+		Map<String, Screen> screens = new LinkedHashMap<>();
+		Map<String, Page> pageMap = new LinkedHashMap<>();
+
+		for (int p = 0; p < pages; p++) {
+			Page page = new Page();
+			setNode(page, "page_" + p);
+			page.setUrl("https://example.com/page_" + p);
+			page.setRoot(p == 0);
+			page.setScreens(new ArrayList<String>());
+			pageMap.put(page.getName(), page);
+		}
+
+		for (int s = 0; s < screenCount; s++) {
+			Screen screen = new Screen();
+			setNode(screen, "screen_" + s);
+			screen.setDefaultComponent(s % screensPerPage == 0);
+
+			List<Control> group = new ArrayList<>();
+			for (int c = 0; c < controlsPerScreen; c++) {
+				Control control = newControl("control_" + s + "_" + c);
+				if (c == 0) {
+					control.setAction_type("type");
+					control.setAction_data("text " + s);
+					textControls[s] = control.getName();
+				} else if (c == 1) {
+					control.setAction_type("click");
+					control.setLeadsto(getNextTarget(s));
+					nextControls[s] = control.getName();
+				} else {
+					fillControl(random, control, s);
+				}
+				group.add(control);
+			}
+			addPreconditions(random, group);
+			screen.setControls(addAll(controls, group));
+
+			List<String> screenApps = new ArrayList<>();
+			for (int a = 0; a < appsPerScreen; a++) {
+				App app = new App();
+				setNode(app, "app_" + s + "_" + a);
+				List<String> appWidgets = new ArrayList<>();
+				for (int w = 0; w < widgetsPerApp; w++) {
+					Widget widget = new Widget();
+					setNode(widget, "widget_" + s + "_" + a + "_" + w);
+					group = new ArrayList<>();
+					for (int c = 0; c < controlsPerWidget; c++) {
+						Control control = newControl("control_" + s + "_" + a + "_" + w + "_" + c);
+						if (c == 0) {
+							control.setAction_type("click");
+						} else {
+							fillControl(random, control, s);
+						}
+						group.add(control);
+					}
+					addPreconditions(random, group);
+					widget.setControls(addAll(controls, group));
+					widgets.put(widget.getName(), widget);
+					appWidgets.add(widget.getName());
+				}
+				app.setWidgets(appWidgets);
+				apps.put(app.getName(), app);
+				screenApps.add(app.getName());
+			}
+			screen.setApps(screenApps);
+
+			screens.put(screen.getName(), screen);
+			pageMap.get("page_" + s / screensPerPage).getScreens().add(screen.getName());
+		}
+
+		Model generated = new Model();
+		generated.setControls(controls);
+		generated.setWidgets(widgets);
+		generated.setApps(apps);
+		generated.setScreens(screens);
+		generated.setPages(pageMap);
+		return generated;
+	}
+
+	/**
+	 * Makes a control stay, or navigate to a random screen.
+	 */
+	private void fillControl(Random random, Control control, int s) {
+		int screenCount = pages * screensPerPage;
+		if (random.nextDouble() >= navigationRatio) {
+			if (random.nextBoolean()) {
+				control.setAction_type("type");
+				control.setAction_data("text " + control.getName());
+			} else {
+				control.setAction_type("click");
+			}
+			return;
+		}
+		control.setAction_type("click");
+		int target;
+		if (s > 0 && (random.nextDouble() < backEdgeRatio || s == screenCount - 1)) {
+			target = random.nextInt(s);
+		} else if (s < screenCount - 1) {
+			target = s + 1 + random.nextInt(screenCount - s - 1);
+		} else {
+			target = s;
+		}
+		control.setLeadsto("screen_" + target);
+	}
+
+	/**
+	 * Gives some navigating controls of a group a precondition on the
+	 * controls of the group that stay, which the graph leads back to the
+	 * parent, so the precondition can always be satisfied.
+	 */
+	private void addPreconditions(Random random, List<Control> group) {
+		List<String> staying = new ArrayList<>();
+		for (Control control : group) {
+			if (control.getLeadsto() == null) {
+				staying.add(control.getName());
+			}
+		}
+		if (staying.isEmpty()) {
+			return;
+		}
+		for (Control control : group) {
+			if (control.getLeadsto() == null || random.nextDouble() >= preconditionDensity) {
+				continue;
+			}
+			List<String> precondition = new ArrayList<>();
+			String first = staying.get(random.nextInt(staying.size()));
+			String clause = first + ";0%as%canSee";
+			String other = staying.get(random.nextInt(staying.size()));
+			if (!other.equals(first)) {
+				if (random.nextBoolean()) {
+					clause += ", " + other + ";0%as%canSee";
+				} else {
+					precondition.add(other + ";0%not%canSee");
+				}
+			}
+			precondition.add(0, clause);
+			control.setPrecondition(precondition);
+		}
+	}
+
+	private String getNextTarget(int s) {
+		if ((s + 1) % screensPerPage != 0) {
+			return "screen_" + (s + 1);
+		}
+		return "page_" + (s / screensPerPage + 1) % pages;
+	}
+
+	private boolean hasNextScreen(int s) {
+		return (s + 1) % screensPerPage != 0;
+	}
+
+	private Map<String, String> generateSpecs(Random random) {
+		List<Integer> starts = new ArrayList<>();
+		for (int s = 0; s < pages * screensPerPage; s++) {
+			if (hasNextScreen(s)) {
+				starts.add(s);
+			}
+		}
+		Collections.shuffle(starts, random);
+
+		Map<String, String> generated = new TreeMap<>();
+		for (int start : starts.subList(0, Math.min(specCount, starts.size()))) {
+			// add the spec and the chain after it, up to a spec added before
+			for (int s = start; !generated.containsKey(getSpecFile(s)); s++) {
+				generated.put(getSpecFile(s), generateSpec(random, s));
+				if (!hasPost(s)) {
+					break;
+				}
+			}
+		}
+		return generated;
+	}
+
+	/**
+	 * Checks if the spec of a screen is chained to the spec of the next one.
+	 * Chains are cut every postChainDepth + 1 screens, so a spec is the same
+	 * whichever chain it is reached from.
+	 */
+	private boolean hasPost(int s) {
+		return postChainDepth > 0 && s % (postChainDepth + 1) != postChainDepth && hasNextScreen(s + 1);
+	}
+
+	private String generateSpec(Random random, int s) {
+		StringBuilder spec = new StringBuilder();
+		spec.append("name: flow").append(s).append('\n');
+		spec.append("given:\n");
+		spec.append(" screen: screen_").append(s).append('\n');
+		spec.append(" assertions:\n");
+		spec.append("when:\n");
+		spec.append(" action_1:\n");
+		spec.append("  action_name: ").append(textControls[s]).append(";0\n");
+		spec.append("  action_type: type\n");
+		spec.append("  action_data:\n");
+		spec.append(" action_2:\n");
+		spec.append("  action_name: ").append(nextControls[s]).append(";0\n");
+		spec.append("  action_type: click\n");
+		spec.append("  action_data:\n");
+		spec.append("wait: ").append(random.nextBoolean() ? "short" : "normal").append('\n');
+		spec.append("then:\n");
+		spec.append(" screen: screen_").append(s + 1).append('\n');
+		spec.append(" assertions:\n");
+		if (hasPost(s)) {
+			spec.append("post: [").append(getSpecFile(s + 1)).append("]\n");
+		}
+		return spec.toString();
+	}
+
+	private static String getSpecFile(int s) {
+		return "flow_" + s + ".yml";
+	}
+
+	private static Control newControl(String name) {
+		Control control = new Control();
+		setNode(control, name);
+		return control;
+	}
+
+	private static void setNode(Node node, String name) {
+		node.setName(name);
+		Map<String, String> id = new HashMap<>();
+		id.put("by", "cssSelector");
+		id.put("locator", "#" + name);
+		node.setId(id);
+	}
+
+	private static List<String> addAll(Map<String, Control> controls, List<Control> group) {
+		List<String> names = new ArrayList<>();
+		for (Control control : group) {
+			controls.put(control.getName(), control);
+			names.add(control.getName());
+		}
+		return names;
+	}
+
+	/**
+	 * Writes the model to model.yml and the specs to the specs directory of
+	 * an input directory.
+	 *
+	 * @param inputDir
+	 *            the input directory
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(File inputDir) throws IOException {
+		File specsDir = new File(inputDir, "specs");
+		specsDir.mkdirs();
+		try (Writer writer = Files.newBufferedWriter(new File(inputDir, "model.yml").toPath(),
+				StandardCharsets.UTF_8)) {
+			writeModel(writer);
+		}
+		for (Map.Entry<String, String> spec : specs.entrySet()) {
+			Files.write(new File(specsDir, spec.getKey()).toPath(), spec.getValue().getBytes(StandardCharsets.UTF_8));
+		}
+		logger.info("Workload written to " + inputDir);
+	}
+
+	private void writeModel(Writer writer) throws IOException {
+		writer.write("controls:\n");
+		for (Control control : model.getControls().values()) {
+			writeNode(writer, control);
+			writeValue(writer, "action_type", control.getAction_type());
+			writeValue(writer, "action_data", control.getAction_data());
+			writeValue(writer, "leadsto", control.getLeadsto());
+			writeList(writer, "precondition", control.getPrecondition());
+		}
+		writer.write("widgets:" + (model.getWidgets().isEmpty() ? " {}" : "") + "\n");
+		for (Widget widget : model.getWidgets().values()) {
+			writeNode(writer, widget);
+			writeList(writer, "controls", widget.getControls());
+		}
+		writer.write("apps:" + (model.getApps().isEmpty() ? " {}" : "") + "\n");
+		for (App app : model.getApps().values()) {
+			writeNode(writer, app);
+			writeList(writer, "widgets", app.getWidgets());
+		}
+		writer.write("screens:\n");
+		for (Screen screen : model.getScreens().values()) {
+			writeNode(writer, screen);
+			writeList(writer, "controls", screen.getControls());
+			writeList(writer, "apps", screen.getApps());
+			if (screen.isDefaultComponent()) {
+				writer.write("    defaultComponent: true\n");
+			}
+		}
+		writer.write("pages:\n");
+		for (Page page : model.getPages().values()) {
+			writeNode(writer, page);
+			writeValue(writer, "url", page.getUrl());
+			writer.write("    root: " + page.getRoot() + "\n");
+			writeList(writer, "screens", page.getScreens());
+		}
+	}
+
+	private static void writeNode(Writer writer, Node node) throws IOException {
+		writer.write("  " + node.getName() + ":\n");
+		writeValue(writer, "name", node.getName());
+		writer.write("    id: {by: " + quote(node.getId().get("by")) + ", locator: "
+				+ quote(node.getId().get("locator")) + "}\n");
+	}
+
+	private static void writeValue(Writer writer, String key, String value) throws IOException {
+		if (value != null) {
+			writer.write("    " + key + ": " + quote(value) + "\n");
+		}
+	}
+
+	private static void writeList(Writer writer, String key, List<String> values) throws IOException {
+		if (values == null || values.isEmpty()) {
+			return;
+		}
+		writer.write("    " + key + ": [");
+		for (int idx = 0; idx < values.size(); idx++) {
+			writer.write((idx == 0 ? "" : ", ") + quote(values.get(idx)));
+		}
+		writer.write("]\n");
+	}
+
+	private static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	public Model getModel() {
+		return model;
+	}
+
+	public Map<String, String> getSpecs() {
+		return specs;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public void setPages(int pages) {
+		this.pages = pages;
+	}
+
+	public void setScreensPerPage(int screensPerPage) {
+		this.screensPerPage = screensPerPage;
+	}
+
+	public void setControlsPerScreen(int controlsPerScreen) {
+		this.controlsPerScreen = controlsPerScreen;
+	}
+
+	public void setAppsPerScreen(int appsPerScreen) {
+		this.appsPerScreen = appsPerScreen;
+	}
+
+	public void setWidgetsPerApp(int widgetsPerApp) {
+		this.widgetsPerApp = widgetsPerApp;
+	}
+
+	public void setControlsPerWidget(int controlsPerWidget) {
+		this.controlsPerWidget = controlsPerWidget;
+	}
+
+	public void setNavigationRatio(double navigationRatio) {
+		this.navigationRatio = navigationRatio;
+	}
+
+	public void setBackEdgeRatio(double backEdgeRatio) {
+		this.backEdgeRatio = backEdgeRatio;
+	}
+
+	public void setPreconditionDensity(double preconditionDensity) {
+		this.preconditionDensity = preconditionDensity;
+	}
+
+	public void setSpecCount(int specCount) {
+		this.specCount = specCount;
+	}
+
+	public void setPostChainDepth(int postChainDepth) {
+		this.postChainDepth = postChainDepth;
+	}
+
+	/**
+	 * Writes a workload to an input directory, after checking that the model
+	 * passes the model and graph consistency checks.
+	 *
+	 * @param args
+	 *            the arguments, see --help
+	 * @throws Exception
+	 *             the exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Options options = new Options();
+		Option output = new Option("o", "output", true, "input directory to write model.yml and specs to");
+		output.setRequired(true);
+		options.addOption(output);
+		options.addOption(null, "seed", true, "random seed (1)");
+		options.addOption(null, "pages", true, "pages (10)");
+		options.addOption(null, "screens-per-page", true, "screens per page (10)");
+		options.addOption(null, "controls-per-screen", true, "controls per screen, at least 2 (6)");
+		options.addOption(null, "apps-per-screen", true, "apps per screen (1)");
+		options.addOption(null, "widgets-per-app", true, "widgets per app (2)");
+		options.addOption(null, "controls-per-widget", true, "controls per widget (4)");
+		options.addOption(null, "navigation-ratio", true, "share of controls leading to another screen (0.3)");
+		options.addOption(null, "back-edge-ratio", true, "share of those leading to an earlier screen (0.2)");
+		options.addOption(null, "precondition-density", true, "share of those with a precondition (0.25)");
+		options.addOption(null, "specs", true, "specs, not counting chained ones (100)");
+		options.addOption(null, "post-chain-depth", true, "post specs chained after a spec (2)");
+
+		CommandLine cmd;
+		try {
+			cmd = new DefaultParser().parse(options, args);
+		} catch (ParseException e) {
+			logger.info(e.getMessage());
+			new HelpFormatter().printHelp("WorkloadGenerator", options);
+			System.exit(1);
+			return;
+		}
+
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.setSeed(Long.parseLong(cmd.getOptionValue("seed", "1")));
+		generator.setPages(Integer.parseInt(cmd.getOptionValue("pages", "10")));
+		generator.setScreensPerPage(Integer.parseInt(cmd.getOptionValue("screens-per-page", "10")));
+		generator.setControlsPerScreen(Integer.parseInt(cmd.getOptionValue("controls-per-screen", "6")));
+		generator.setAppsPerScreen(Integer.parseInt(cmd.getOptionValue("apps-per-screen", "1")));
+		generator.setWidgetsPerApp(Integer.parseInt(cmd.getOptionValue("widgets-per-app", "2")));
+		generator.setControlsPerWidget(Integer.parseInt(cmd.getOptionValue("controls-per-widget", "4")));
+		generator.setNavigationRatio(Double.parseDouble(cmd.getOptionValue("navigation-ratio", "0.3")));
+		generator.setBackEdgeRatio(Double.parseDouble(cmd.getOptionValue("back-edge-ratio", "0.2")));
+		generator.setPreconditionDensity(Double.parseDouble(cmd.getOptionValue("precondition-density", "0.25")));
+		generator.setSpecCount(Integer.parseInt(cmd.getOptionValue("specs", "100")));
+		generator.setPostChainDepth(Integer.parseInt(cmd.getOptionValue("post-chain-depth", "2")));
+		generator.generate();
+
+		ModelReader.validateModel(generator.getModel());
+		GraphGenerator graphGenerator = new GraphGenerator(generator.getModel());
+		graphGenerator.initialize();
+		graphGenerator.consistencyCheck();
+
+		generator.write(new File(cmd.getOptionValue("output")));
+	}
+}
@@ -0,0 +1,59 @@
+package io.typeset.sphinx.generators.ds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.codemodel.JDefinedClass;
+import com.sun.codemodel.JMethod;
+
+/**
+ * The Class ChainNode. A node of the post-spec chain tree of a spec: the
+ * class generated for one spec of the chain, the method that runs that
+ * spec's own steps, and the classes chained after it.
+ */
+public class ChainNode {
+
+	/** The test class. */
+	private JDefinedClass definedClass;
+
+	/** The method running the steps of this spec only. */
+	private JMethod method;
+
+	/** The post specs chained after this one. */
+	private List<ChainNode> children = new ArrayList<>();
+
+	/**
+	 * Instantiates a new chain node.
+	 *
+	 * @param definedClass
+	 *            the test class
+	 * @param method
+	 *            the method running the steps of this spec only
+	 */
+	public ChainNode(JDefinedClass definedClass, JMethod method) {
+		this.definedClass = definedClass;
+		this.method = method;
+	}
+
+	public JDefinedClass getDefinedClass() {
+		return definedClass;
+	}
+
+	public JMethod getMethod() {
+		return method;
+	}
+
+	public List<ChainNode> getChildren() {
+		return children;
+	}
+
+	/**
+	 * Adds a post spec chained after this one.
+	 *
+	 * @param child
+	 *            the chained node
+	 */
+	public void addChild(ChainNode child) {
+		children.add(child);
+	}
+}
@@ -0,0 +1,132 @@
+package io.typeset.sphinx.generators.ds;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import com.sun.codemodel.JFieldRef;
+import com.sun.codemodel.JFieldVar;
+
+import io.typeset.sphinx.model.GraphNode;
+
+/**
+ * The Class GenerationContext. The mutable program state used while the test
+ * class of a single spec (and its post-spec chain) is generated. Every spec
+ * gets its own context, so specs can be generated concurrently.
+ */
+public class GenerationContext {
+
+	/** The System.out reference of the code model being generated. */
+	private JFieldRef outVar;
+
+	/** The page field variables defined in the test class. */
+	private Map<GraphNode, JFieldVar> definedPages = new HashMap<>();
+
+	/** The page node behind every page field variable. */
+	private Map<JFieldVar, GraphNode> fieldVarToNodeMap = new HashMap<>();
+
+	/** The stack of active screens, apps and widgets. */
+	private Stack<GraphNode> stack = new Stack<GraphNode>();
+
+	/** The active page variable. */
+	private JFieldVar activePageVariable = null;
+
+	/** The pages used, by screen name. */
+	private Map<String, GraphNode> usedPages = null;
+
+	/** The post-spec chain depth, used for method naming. */
+	private int specChainCounter = 0;
+
+	/** The test classes written for this spec, in the order they were written. */
+	private Map<String, String> generatedTests = new LinkedHashMap<>();
+
+	/** The files written for this spec, relative to the java output directory. */
+	private List<String> writtenFiles = new ArrayList<>();
+
+	/**
+	 * Saves the part of the state that a post-spec branch modifies.
+	 *
+	 * @return the saved state
+	 */
+	@SuppressWarnings("unchecked")
+	public GenerationContext save() {
+		GenerationContext saved = new GenerationContext();
+		saved.stack = (Stack<GraphNode>) stack.clone();
+		saved.definedPages.putAll(definedPages);
+		saved.activePageVariable = activePageVariable;
+		saved.usedPages = new HashMap<>(usedPages);
+		return saved;
+	}
+
+	/**
+	 * Restores state saved before a post-spec branch.
+	 *
+	 * @param saved
+	 *            the saved state
+	 */
+	public void restore(GenerationContext saved) {
+		stack = saved.stack;
+		definedPages = saved.definedPages;
+		activePageVariable = saved.activePageVariable;
+		usedPages = saved.usedPages;
+	}
+
+	public JFieldRef getOutVar() {
+		return outVar;
+	}
+
+	public void setOutVar(JFieldRef outVar) {
+		this.outVar = outVar;
+	}
+
+	public Map<GraphNode, JFieldVar> getDefinedPages() {
+		return definedPages;
+	}
+
+	public Map<JFieldVar, GraphNode> getFieldVarToNodeMap() {
+		return fieldVarToNodeMap;
+	}
+
+	public Stack<GraphNode> getStack() {
+		return stack;
+	}
+
+	public JFieldVar getActivePageVariable() {
+		return activePageVariable;
+	}
+
+	public void setActivePageVariable(JFieldVar activePageVariable) {
+		this.activePageVariable = activePageVariable;
+	}
+
+	public Map<String, GraphNode> getUsedPages() {
+		return usedPages;
+	}
+
+	public void setUsedPages(Map<String, GraphNode> usedPages) {
+		this.usedPages = usedPages;
+	}
+
+	public int getSpecChainCounter() {
+		return specChainCounter;
+	}
+
+	/**
+	 * Moves one level down the post-spec chain.
+	 */
+	public void incrementSpecChainCounter() {
+		specChainCounter += 1;
+	}
+
+	public Map<String, String> getGeneratedTests() {
+		return generatedTests;
+	}
+
+	public List<String> getWrittenFiles() {
+		return writtenFiles;
+	}
+
+}
@@ -0,0 +1,338 @@
+package io.typeset.sphinx.generators.ds;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The Class GenerationManifest. Records, for the last generation run, a hash
+ * of the global inputs (model, config and generator version) and, for every
+ * spec, a hash of the spec and its post-spec chain together with the test
+ * classes and files it produced. A spec whose hashes are unchanged does not
+ * need to be generated again.
+ *
+ * The manifest is kept as a properties file in the output directory. When the
+ * global inputs change the output directory is cleaned and every spec is
+ * generated again.
+ */
+public class GenerationManifest {
+	private static final Logger logger = LogManager.getLogger("GenerationManifest");
+
+	/** The manifest file name. */
+	public static final String FILE_NAME = "sphinx-manifest.properties";
+
+	/** The separator of list values. */
+	private static final String SEPARATOR = ",";
+
+	/** The manifest file. */
+	private File file;
+
+	/** The hash of the global inputs. */
+	private String inputsHash = null;
+
+	/** The hash of the inputs of every spec, by spec file name. */
+	private Map<String, String> specHashes = new LinkedHashMap<>();
+
+	/** The test classes of every spec, by spec file name. */
+	private Map<String, List<String>> specTests = new LinkedHashMap<>();
+
+	/** The generated files of every spec, by spec file name. */
+	private Map<String, List<String>> specFiles = new LinkedHashMap<>();
+
+	/**
+	 * Instantiates an empty manifest.
+	 *
+	 * @param outputDir
+	 *            the output directory
+	 */
+	public GenerationManifest(String outputDir) {
+		this.file = new File(outputDir, FILE_NAME);
+	}
+
+	/**
+	 * Loads the manifest of the output directory, empty if there is none.
+	 *
+	 * @param outputDir
+	 *            the output directory
+	 * @return the manifest
+	 */
+	public static GenerationManifest load(String outputDir) {
+		GenerationManifest manifest = new GenerationManifest(outputDir);
+		if (!manifest.file.isFile()) {
+			logger.info("No generation manifest found in " + outputDir);
+			return manifest;
+		}
+
+		Properties prop = new Properties();
+		InputStream input = null;
+		try {
+			input = new FileInputStream(manifest.file);
+			prop.load(input);
+		} catch (IOException e) {
+			logger.info("Unreadable generation manifest, regenerating everything");
+			return manifest;
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		manifest.inputsHash = prop.getProperty("inputs");
+		for (String key : new TreeSet<>(prop.stringPropertyNames())) {
+			if (!key.startsWith("spec.") || !key.endsWith(".hash")) {
+				continue;
+			}
+			String spec = key.substring("spec.".length(), key.length() - ".hash".length());
+			manifest.specHashes.put(spec, prop.getProperty(key));
+			manifest.specTests.put(spec, split(prop.getProperty("spec." + spec + ".tests")));
+			manifest.specFiles.put(spec, split(prop.getProperty("spec." + spec + ".files")));
+		}
+		logger.info("Loaded generation manifest of " + manifest.specHashes.size() + " specs");
+		return manifest;
+	}
+
+	/**
+	 * Writes the manifest back to the output directory.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void save() throws IOException {
+		Properties prop = new Properties();
+		if (inputsHash != null) {
+			prop.setProperty("inputs", inputsHash);
+		}
+		for (String spec : specFiles.keySet()) {
+			prop.setProperty("spec." + spec + ".hash", specHashes.get(spec));
+			prop.setProperty("spec." + spec + ".tests", join(specTests.get(spec)));
+			prop.setProperty("spec." + spec + ".files", join(specFiles.get(spec)));
+		}
+
+		file.getParentFile().mkdirs();
+		OutputStream output = null;
+		try {
+			output = new FileOutputStream(file);
+			prop.store(output, "Sphinx generation manifest");
+		} finally {
+			if (output != null) {
+				output.close();
+			}
+		}
+	}
+
+	/**
+	 * Checks if the last run used the same global inputs.
+	 *
+	 * @param hash
+	 *            the hash of the current global inputs
+	 * @return true, if the recorded specs can be reused
+	 */
+	public boolean hasInputs(String hash) {
+		return hash.equals(inputsHash);
+	}
+
+	public void setInputsHash(String inputsHash) {
+		this.inputsHash = inputsHash;
+	}
+
+	/**
+	 * Checks if a spec was generated from the same inputs.
+	 *
+	 * @param spec
+	 *            the spec file name
+	 * @param hash
+	 *            the hash of its current inputs
+	 * @return true, if it need not be generated again
+	 */
+	public boolean isUpToDate(String spec, String hash) {
+		return hash.equals(specHashes.get(spec));
+	}
+
+	/**
+	 * Gets the test classes generated for a spec, with the test method to run.
+	 *
+	 * @param spec
+	 *            the spec file name
+	 * @return the test classes
+	 */
+	public Map<String, String> getTests(String spec) {
+		Map<String, String> tests = new LinkedHashMap<>();
+		if (specTests.containsKey(spec)) {
+			for (String test : specTests.get(spec)) {
+				tests.put(test, "execute");
+			}
+		}
+		return tests;
+	}
+
+	/**
+	 * Gets the files generated for a spec.
+	 *
+	 * @param spec
+	 *            the spec file name
+	 * @return the files, relative to the java output directory
+	 */
+	public List<String> getFiles(String spec) {
+		List<String> files = specFiles.get(spec);
+		return files == null ? Collections.<String> emptyList() : files;
+	}
+
+	/**
+	 * Gets the specs recorded.
+	 *
+	 * @return the spec file names
+	 */
+	public Set<String> getSpecs() {
+		return new TreeSet<>(specFiles.keySet());
+	}
+
+	/**
+	 * Records the outcome of generating a spec.
+	 *
+	 * @param spec
+	 *            the spec file name
+	 * @param hash
+	 *            the hash of its inputs
+	 * @param tests
+	 *            the test classes generated
+	 * @param files
+	 *            the files generated, relative to the java output directory
+	 */
+	public void put(String spec, String hash, Map<String, String> tests, List<String> files) {
+		specHashes.put(spec, hash);
+		specTests.put(spec, new ArrayList<>(tests.keySet()));
+		specFiles.put(spec, new ArrayList<>(files));
+	}
+
+	/**
+	 * Forgets a spec.
+	 *
+	 * @param spec
+	 *            the spec file name
+	 */
+	public void remove(String spec) {
+		specHashes.remove(spec);
+		specTests.remove(spec);
+		specFiles.remove(spec);
+	}
+
+	/**
+	 * Hashes the content of a list of files, in order. Missing files hash as
+	 * empty, null entries are skipped.
+	 *
+	 * @param files
+	 *            the files
+	 * @return the hex encoded SHA-256 digest
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static String hash(File... files) throws IOException {
+		MessageDigest digest = newDigest();
+		for (File f : files) {
+			if (f == null) {
+				continue;
+			}
+			digest.update(f.getName().getBytes("UTF-8"));
+			if (f.isFile()) {
+				digest.update(Files.readAllBytes(f.toPath()));
+			}
+			digest.update((byte) 0);
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Hashes a list of strings, in order.
+	 *
+	 * @param values
+	 *            the values
+	 * @return the hex encoded SHA-256 digest
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static String hash(String... values) throws IOException {
+		MessageDigest digest = newDigest();
+		for (String value : values) {
+			digest.update(String.valueOf(value).getBytes("UTF-8"));
+			digest.update((byte) 0);
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Gets the version of the running generator: the implementation version of
+	 * its jar, or the timestamp of its classes when run from a build directory.
+	 *
+	 * @return the generator version
+	 */
+	public static String getGeneratorVersion() {
+		String version = GenerationManifest.class.getPackage().getImplementationVersion();
+		if (version != null) {
+			return version;
+		}
+		URL classFile = GenerationManifest.class.getResource(GenerationManifest.class.getSimpleName() + ".class");
+		if (classFile != null && "file".equals(classFile.getProtocol())) {
+			return "build-" + new File(classFile.getPath()).lastModified();
+		}
+		return "unknown";
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	private static List<String> split(String value) {
+		List<String> values = new ArrayList<>();
+		if (value == null || value.isEmpty()) {
+			return values;
+		}
+		values.addAll(Arrays.asList(value.split(SEPARATOR)));
+		return values;
+	}
+
+	private static String join(List<String> values) {
+		StringBuilder joined = new StringBuilder();
+		for (String value : values) {
+			if (joined.length() > 0) {
+				joined.append(SEPARATOR);
+			}
+			joined.append(value);
+		}
+		return joined.toString();
+	}
+}
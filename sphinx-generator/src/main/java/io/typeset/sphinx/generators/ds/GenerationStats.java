@@ -0,0 +1,230 @@
+package io.typeset.sphinx.generators.ds;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The Class GenerationStats. The wall time and memory allocated by every phase
+ * of a generation run, and counters of the work done, written as JSON next to
+ * testng.xml so generator performance can be compared build over build.
+ *
+ * Phases are started and ended by the main thread, one at a time. The
+ * allocation of a phase is summed over every live thread, so threads that end
+ * before the phase does are not counted; it is -1 when the JVM cannot measure
+ * it. Counters may be incremented from any thread.
+ */
+public class GenerationStats {
+	private static final Logger logger = LogManager.getLogger("GenerationStats");
+
+	/** The stats file name. */
+	public static final String FILE_NAME = "sphinx-stats.json";
+
+	/** The vertices of the graph. */
+	public static final String VERTICES = "vertices";
+
+	/** The edges of the graph. */
+	public static final String EDGES = "edges";
+
+	/** The paths, complete or partial, considered while searching for feasible paths. */
+	public static final String PATHS_ENUMERATED = "pathsEnumerated";
+
+	/** The paths dropped for breaking a precondition or the maximum length. */
+	public static final String PATHS_REJECTED = "pathsRejected";
+
+	/** The java files written, leaving out unchanged ones. */
+	public static final String CLASSES_WRITTEN = "classesWritten";
+
+	/** The java files whose content had not changed. */
+	public static final String CLASSES_UNCHANGED = "classesUnchanged";
+
+	/** The bytes of the java files written. */
+	public static final String BYTES_WRITTEN = "bytesWritten";
+
+	/** The specs enabled for the run. */
+	public static final String SPECS = "specs";
+
+	/** The test classes generated. */
+	public static final String TESTS = "tests";
+
+	private static final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+	private static final List<Phase> phases = new ArrayList<>();
+
+	/** The phase in progress, null if there is none. */
+	private static Phase current = null;
+
+	/** The wall time and allocation of a phase. */
+	private static class Phase {
+		private final String name;
+		private final long start = System.nanoTime();
+		private final Map<Long, Long> allocatedAtStart = getAllocatedBytes();
+		private long wallNanos;
+		private long allocatedBytes = -1;
+
+		Phase(String name) {
+			this.name = name;
+		}
+
+		void end() {
+			wallNanos = System.nanoTime() - start;
+			Map<Long, Long> allocatedAtEnd = getAllocatedBytes();
+			if (allocatedAtStart == null || allocatedAtEnd == null) {
+				return;
+			}
+			allocatedBytes = 0;
+			for (Map.Entry<Long, Long> thread : allocatedAtEnd.entrySet()) {
+				Long before = allocatedAtStart.get(thread.getKey());
+				allocatedBytes += thread.getValue() - (before == null ? 0 : before);
+			}
+		}
+	}
+
+	/**
+	 * Starts a phase, ending the one in progress.
+	 *
+	 * @param name
+	 *            the phase name
+	 */
+	public static synchronized void startPhase(String name) {
+		endPhase();
+		current = new Phase(name);
+	}
+
+	/**
+	 * Ends the phase in progress, if any.
+	 */
+	public static synchronized void endPhase() {
+		if (current != null) {
+			current.end();
+			phases.add(current);
+			logger.debug("Phase " + current.name + " took " + current.wallNanos / 1000000 + " ms");
+			current = null;
+		}
+	}
+
+	/**
+	 * Adds to a counter.
+	 *
+	 * @param counter
+	 *            the counter name
+	 * @param delta
+	 *            the amount to add
+	 */
+	public static void count(String counter, long delta) {
+		AtomicLong value = counters.get(counter);
+		if (value == null) {
+			AtomicLong created = new AtomicLong();
+			value = counters.putIfAbsent(counter, created);
+			if (value == null) {
+				value = created;
+			}
+		}
+		value.addAndGet(delta);
+	}
+
+	/**
+	 * Gets the value of a counter.
+	 *
+	 * @param counter
+	 *            the counter name
+	 * @return the value, 0 if it was never counted
+	 */
+	public static long get(String counter) {
+		AtomicLong value = counters.get(counter);
+		return value == null ? 0 : value.get();
+	}
+
+	/**
+	 * Ends the phase in progress and writes the stats of the run.
+	 *
+	 * @param outputDir
+	 *            the directory testng.xml is written to
+	 * @return the stats file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static synchronized File write(String outputDir) throws IOException {
+		endPhase();
+
+		long totalNanos = 0;
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"generatorVersion\": \"").append(escape(GenerationManifest.getGeneratorVersion()))
+				.append("\",\n");
+		json.append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n");
+		json.append("  \"phases\": [");
+		for (int idx = 0; idx < phases.size(); idx++) {
+			Phase phase = phases.get(idx);
+			totalNanos += phase.wallNanos;
+			json.append(idx == 0 ? "\n" : ",\n");
+			json.append("    {\"name\": \"").append(phase.name).append("\", \"wallMillis\": ")
+					.append(toMillis(phase.wallNanos)).append(", \"allocatedBytes\": ").append(phase.allocatedBytes)
+					.append("}");
+		}
+		json.append("\n  ],\n");
+		json.append("  \"totalMillis\": ").append(toMillis(totalNanos)).append(",\n");
+		json.append("  \"counters\": {");
+		boolean first = true;
+		for (Map.Entry<String, AtomicLong> counter : new TreeMap<>(counters).entrySet()) {
+			json.append(first ? "\n" : ",\n");
+			json.append("    \"").append(counter.getKey()).append("\": ").append(counter.getValue().get());
+			first = false;
+		}
+		json.append("\n  }\n");
+		json.append("}\n");
+
+		File file = new File(outputDir, FILE_NAME);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+		logger.info("Generation stats written to " + file);
+		return file;
+	}
+
+	private static String toMillis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	/**
+	 * Gets the bytes allocated so far by every live thread.
+	 *
+	 * @return the bytes by thread id, or null if the JVM cannot tell
+	 */
+	private static Map<Long, Long> getAllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+			return null;
+		}
+		long[] ids = threads.getAllThreadIds();
+		long[] bytes = threads.getThreadAllocatedBytes(ids);
+		Map<Long, Long> allocated = new HashMap<>();
+		for (int idx = 0; idx < ids.length; idx++) {
+			if (bytes[idx] >= 0) {
+				allocated.put(ids[idx], bytes[idx]);
+			}
+		}
+		return allocated;
+	}
+}
@@ -0,0 +1,173 @@
+package io.typeset.sphinx.generators.ds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+
+import io.typeset.sphinx.model.GraphNode;
+
+/**
+ * The Class ReachabilityIndex. The transitive closure of the graph, built
+ * once so that "can X reach Y" is answered with a single bit lookup.
+ *
+ * The graph is condensed into its strongly connected components, which are
+ * produced in reverse topological order, so the reachable set of a component
+ * is its own members plus the union of the already computed sets of its
+ * successors. Every node reaches itself.
+ */
+public class ReachabilityIndex {
+
+	/** The id of every node, used as its bit position. */
+	private Map<GraphNode, Integer> nodeIds;
+
+	/** The strongly connected component of every node id. */
+	private int[] component;
+
+	/** The bitset of node ids reachable from every component. */
+	private long[][] reach;
+
+	/**
+	 * Builds the index for a graph. The graph must not change afterwards.
+	 *
+	 * @param graph
+	 *            the graph
+	 */
+	public ReachabilityIndex(DefaultDirectedGraph<GraphNode, DefaultEdge> graph) {
+		Set<GraphNode> vertices = graph.vertexSet();
+		int n = vertices.size();
+
+		nodeIds = new HashMap<>();
+		for (GraphNode node : vertices) {
+			nodeIds.put(node, nodeIds.size());
+		}
+
+		int[][] successors = new int[n][];
+		for (GraphNode node : vertices) {
+			Set<DefaultEdge> edges = graph.outgoingEdgesOf(node);
+			int[] targets = new int[edges.size()];
+			int idx = 0;
+			for (DefaultEdge edge : edges) {
+				targets[idx++] = nodeIds.get(graph.getEdgeTarget(edge));
+			}
+			successors[nodeIds.get(node)] = targets;
+		}
+
+		build(successors);
+	}
+
+	/**
+	 * Checks if a node can reach another.
+	 *
+	 * @param from
+	 *            the source node
+	 * @param to
+	 *            the destination node
+	 * @return true, if there is a path from source to destination
+	 */
+	public boolean canReach(GraphNode from, GraphNode to) {
+		Integer fromId = nodeIds.get(from);
+		Integer toId = nodeIds.get(to);
+		if (fromId == null || toId == null) {
+			return false;
+		}
+		long[] bits = reach[component[fromId]];
+		return (bits[toId >>> 6] & (1L << toId)) != 0;
+	}
+
+	/**
+	 * Iterative Tarjan; computes the reachable set of each component as it is
+	 * emitted.
+	 *
+	 * @param successors
+	 *            the successor ids of every node id
+	 */
+	private void build(int[][] successors) {
+		int n = successors.length;
+		int words = (n + 63) >>> 6;
+
+		component = new int[n];
+		int[] index = new int[n];
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int[] callStack = new int[n];
+		int[] edgePosition = new int[n];
+		Arrays.fill(index, -1);
+
+		List<long[]> componentReach = new ArrayList<>();
+		int counter = 0;
+		int sp = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			int csp = 0;
+			index[root] = low[root] = counter++;
+			stack[sp++] = root;
+			onStack[root] = true;
+			callStack[csp] = root;
+			edgePosition[csp++] = 0;
+
+			while (csp > 0) {
+				int v = callStack[csp - 1];
+				if (edgePosition[csp - 1] < successors[v].length) {
+					int w = successors[v][edgePosition[csp - 1]++];
+					if (index[w] == -1) {
+						index[w] = low[w] = counter++;
+						stack[sp++] = w;
+						onStack[w] = true;
+						callStack[csp] = w;
+						edgePosition[csp++] = 0;
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+					continue;
+				}
+
+				csp--;
+				if (csp > 0) {
+					int u = callStack[csp - 1];
+					low[u] = Math.min(low[u], low[v]);
+				}
+				if (low[v] != index[v]) {
+					continue;
+				}
+
+				// v is the root of a component; every component reachable from it has
+				// already been emitted
+				int componentId = componentReach.size();
+				long[] bits = new long[words];
+				int first = sp;
+				int w;
+				do {
+					w = stack[--first];
+					onStack[w] = false;
+					component[w] = componentId;
+					bits[w >>> 6] |= 1L << w;
+				} while (w != v);
+				for (int m = first; m < sp; m++) {
+					for (int s : successors[stack[m]]) {
+						int target = component[s];
+						if (target != componentId) {
+							long[] other = componentReach.get(target);
+							for (int k = 0; k < words; k++) {
+								bits[k] |= other[k];
+							}
+						}
+					}
+				}
+				sp = first;
+				componentReach.add(bits);
+			}
+		}
+
+		reach = componentReach.toArray(new long[componentReach.size()][]);
+	}
+}
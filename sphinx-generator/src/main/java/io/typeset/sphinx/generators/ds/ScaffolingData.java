@@ -1,5 +1,8 @@
 package io.typeset.sphinx.generators.ds;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.sun.codemodel.JBlock;
 import com.sun.codemodel.JMethod;
 import com.sun.codemodel.JVar;
@@ -19,6 +22,21 @@ public class ScaffolingData {
 	/** The assert var. */
 	JVar assertVar;
 
+	/** The assertion batch being filled, null if there is none. */
+	JVar batchVar;
+
+	/** The expected result of every check in the batch. */
+	List<Boolean> batchExpectations = new ArrayList<>();
+
+	/** The node checked by every check in the batch. */
+	List<String> batchNodes = new ArrayList<>();
+
+	/** The number of batches declared in the method. */
+	int batchCount = 0;
+
+	/** The spec the method is generated for. */
+	String specName;
+
 	/**
 	 * Instantiates a new scaffoling data.
 	 *
@@ -87,4 +105,79 @@ public class ScaffolingData {
 		this.assertVar = assertVar;
 	}
 
+	/**
+	 * Gets the assertion batch being filled.
+	 *
+	 * @return the batch var, null if there is none
+	 */
+	public JVar getBatchVar() {
+		return batchVar;
+	}
+
+	/**
+	 * Starts a new assertion batch.
+	 *
+	 * @param batchVar the batch var
+	 */
+	public void startBatch(JVar batchVar) {
+		this.batchVar = batchVar;
+		this.batchExpectations.clear();
+		this.batchNodes.clear();
+		this.batchCount++;
+	}
+
+	/**
+	 * Ends the current assertion batch.
+	 */
+	public void endBatch() {
+		this.batchVar = null;
+		this.batchExpectations.clear();
+		this.batchNodes.clear();
+	}
+
+	/**
+	 * Gets the expected result of every check in the batch.
+	 *
+	 * @return the batch expectations
+	 */
+	public List<Boolean> getBatchExpectations() {
+		return batchExpectations;
+	}
+
+	/**
+	 * Gets the node checked by every check in the batch.
+	 *
+	 * @return the batch nodes
+	 */
+	public List<String> getBatchNodes() {
+		return batchNodes;
+	}
+
+	/**
+	 * Gets the number of batches declared in the method.
+	 *
+	 * @return the batch count
+	 */
+	public int getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * Gets the spec the method is generated for.
+	 *
+	 * @return the spec name
+	 */
+	public String getSpecName() {
+		return specName;
+	}
+
+	/**
+	 * Sets the spec the method is generated for.
+	 *
+	 * @param specName the new spec name
+	 */
+	public void setSpecName(String specName) {
+		this.specName = specName;
+	}
+
 }
@@ -0,0 +1,128 @@
+package io.typeset.sphinx.generators.search;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.typeset.sphinx.exceptions.InvalidConfigException;
+import io.typeset.sphinx.model.GraphNode;
+import io.typeset.sphinx.model.NodeType;
+
+/**
+ * The Class ActionCostModel. Estimates how long the generated test spends on a
+ * node when it walks a path in given(): the implicit assertion of pages,
+ * screens, apps and widgets, and the action of controls followed by their
+ * wait. Costs are in seconds and default to the fixed sleeps of the runtime
+ * ActionClass; measured timings, when supplied, take precedence.
+ */
+public class ActionCostModel {
+	private static final Logger logger = LogManager.getLogger("ActionCostModel");
+
+	/** The cost of an action with no known timing, roughly one WebDriver round trip. */
+	public static final double DEFAULT_COST = 0.5;
+
+	/** The cost of every action, by runtime method name. */
+	private Map<String, Double> costs = new HashMap<>();
+
+	/**
+	 * Instantiates a cost model with the default timings.
+	 */
+	public ActionCostModel() {
+		costs.put("atPage", 10.0);
+		costs.put("click", 5.0);
+		costs.put("type", 5.0);
+		costs.put("waitForAShortWhile", 2.0);
+		costs.put("waitForAWhile", 5.0);
+		costs.put("waitForALongWhile", 20.0);
+	}
+
+	/**
+	 * Instantiates a cost model with the default timings overridden by measured
+	 * ones.
+	 *
+	 * @param timingsFile
+	 *            properties file mapping runtime method names to seconds, may be
+	 *            null
+	 */
+	public ActionCostModel(String timingsFile) {
+		this();
+		if (timingsFile != null) {
+			load(timingsFile);
+		}
+	}
+
+	/**
+	 * Gets the cost of the step the generated test performs on a node before
+	 * moving on.
+	 *
+	 * @param node
+	 *            the node
+	 * @return the cost in seconds
+	 */
+	public double getCost(GraphNode node) {
+		if (node.getNodeType() != NodeType.CONTROL) {
+			if (node.getImplictAssertions().isEmpty()) {
+				return DEFAULT_COST;
+			}
+			return getCost(node.getImplictAssertions().get(0));
+		}
+		double cost = getCost(node.getAction_type());
+		String wait = node.getWait_time();
+		if (wait != null) {
+			if (wait.toLowerCase().equals("short")) {
+				cost += getCost("waitForAShortWhile");
+			} else if (wait.toLowerCase().equals("normal")) {
+				cost += getCost("waitForAWhile");
+			} else if (wait.toLowerCase().equals("long")) {
+				cost += getCost("waitForALongWhile");
+			}
+		}
+		return cost;
+	}
+
+	/**
+	 * Gets the cost of a runtime action.
+	 *
+	 * @param action
+	 *            the runtime method name
+	 * @return the cost in seconds
+	 */
+	public double getCost(String action) {
+		Double cost = action == null ? null : costs.get(action);
+		return cost == null ? DEFAULT_COST : cost;
+	}
+
+	private void load(String timingsFile) {
+		Properties prop = new Properties();
+		InputStream input = null;
+		try {
+			input = new FileInputStream(timingsFile);
+			prop.load(input);
+		} catch (IOException e) {
+			throw new InvalidConfigException("Cannot read action timings " + timingsFile);
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		for (String action : prop.stringPropertyNames()) {
+			try {
+				costs.put(action, Double.parseDouble(prop.getProperty(action).trim()));
+			} catch (NumberFormatException e) {
+				throw new InvalidConfigException("Invalid timing for action " + action + " in " + timingsFile);
+			}
+		}
+		logger.debug("Action costs : " + costs);
+	}
+}
@@ -0,0 +1,63 @@
+package io.typeset.sphinx.generators.search;
+
+import java.util.List;
+import java.util.Map;
+
+import io.typeset.sphinx.model.GraphNode;
+import io.typeset.sphinx.model.assertions.Clause;
+import io.typeset.sphinx.model.assertions.ExplicitAssertion;
+import io.typeset.sphinx.model.assertions.Literal;
+
+/**
+ * The Class CompiledPrecondition. A precondition in conjunctive normal form
+ * compiled to word masks over the constraining node indices. A literal holds
+ * when its node has been visited, a negated literal when it has not.
+ *
+ * Each clause keeps one mask of its positive literals and one of its negated
+ * literals; it holds when the visited set intersects the first or does not
+ * contain all of the second.
+ */
+final class CompiledPrecondition {
+
+	/** The positive literal mask of every clause. */
+	private final long[][] positive;
+
+	/** The negated literal mask of every clause. */
+	private final long[][] negative;
+
+	/**
+	 * Compiles a precondition.
+	 *
+	 * @param precondition the parsed precondition
+	 * @param constrainingNodes the index of every constraining node
+	 */
+	CompiledPrecondition(ExplicitAssertion precondition, Map<GraphNode, Integer> constrainingNodes) {
+		List<Clause> clauses = precondition.getclauses();
+		int words = (constrainingNodes.size() + 63) >>> 6;
+		positive = new long[clauses.size()][words];
+		negative = new long[clauses.size()][words];
+		for (int c = 0; c < clauses.size(); c++) {
+			for (Literal literal : clauses.get(c).getLiterals()) {
+				int index = constrainingNodes.get(literal.getNode());
+				long[] mask = literal.isNegation() ? negative[c] : positive[c];
+				mask[index >>> 6] |= 1L << index;
+			}
+		}
+	}
+
+	/**
+	 * Evaluates the precondition.
+	 *
+	 * @param visited the constraining nodes visited so far
+	 * @return true, if every clause holds
+	 */
+	boolean isSatisfied(NodeMask visited) {
+		for (int c = 0; c < positive.length; c++) {
+			if (!visited.intersects(positive[c]) && visited.containsAll(negative[c])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,133 @@
+package io.typeset.sphinx.generators.search;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultEdge;
+
+import io.typeset.sphinx.exceptions.InvalidPathException;
+import io.typeset.sphinx.model.GraphNode;
+
+/**
+ * The Class FeasiblePathCache. Remembers feasible paths for the whole
+ * generation run, so that specs starting on the same screen are resolved by
+ * a single search. Searches that found no path are remembered too.
+ *
+ * A search depends only on its end points, as the preconditions it checks
+ * are compiled once into the search itself. When several threads miss on the
+ * same end points at once, one of them searches and the others wait for its
+ * result.
+ */
+public class FeasiblePathCache {
+	private static final Logger logger = LogManager.getLogger("FeasiblePathCache");
+
+	/** The search used on a miss. */
+	private final FeasiblePathSearch search;
+
+	/** The searches made or in progress, by signature. */
+	private final ConcurrentMap<String, FutureTask<GraphPath<GraphNode, DefaultEdge>>> paths =
+			new ConcurrentHashMap<>();
+
+	/** The number of lookups answered by a search another lookup made. */
+	private final AtomicInteger hits = new AtomicInteger();
+
+	/** The number of lookups that required a search. */
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * Instantiates a new feasible path cache.
+	 *
+	 * @param search
+	 *            the search used on a miss
+	 */
+	public FeasiblePathCache(FeasiblePathSearch search) {
+		this.search = search;
+	}
+
+	/**
+	 * Gets the feasible path from source to target, searching only if the
+	 * same search has not been made or started yet.
+	 *
+	 * @param source
+	 *            the source node
+	 * @param target
+	 *            the target node
+	 * @return the path, or null if none is feasible
+	 */
+	public GraphPath<GraphNode, DefaultEdge> getPath(final GraphNode source, final GraphNode target) {
+		String key = getSignature(source, target);
+		FutureTask<GraphPath<GraphNode, DefaultEdge>> task = paths.get(key);
+		if (task == null) {
+			FutureTask<GraphPath<GraphNode, DefaultEdge>> created = new FutureTask<>(
+					new Callable<GraphPath<GraphNode, DefaultEdge>>() {
+						@Override
+						public GraphPath<GraphNode, DefaultEdge> call() {
+							return search.findPath(source, target);
+						}
+					});
+			task = paths.putIfAbsent(key, created);
+			if (task == null) {
+				misses.incrementAndGet();
+				created.run();
+				return getResult(created, key);
+			}
+		}
+		hits.incrementAndGet();
+		logger.info("Feasible path cache hit for " + key);
+		return getResult(task, key);
+	}
+
+	/**
+	 * Builds the signature of a search: its end points.
+	 *
+	 * @param source
+	 *            the source node
+	 * @param target
+	 *            the target node
+	 * @return the signature
+	 */
+	private String getSignature(GraphNode source, GraphNode target) {
+		return source.getName() + "->" + target.getName();
+	}
+
+	private GraphPath<GraphNode, DefaultEdge> getResult(FutureTask<GraphPath<GraphNode, DefaultEdge>> task,
+			String key) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InvalidPathException("Interrupted while searching " + key);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new InvalidPathException("Search " + key + " failed : " + cause);
+		}
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return hits.get() + " hits, " + misses.get() + " misses";
+	}
+}
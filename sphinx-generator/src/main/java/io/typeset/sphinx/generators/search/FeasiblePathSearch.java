@@ -0,0 +1,261 @@
+package io.typeset.sphinx.generators.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.GraphWalk;
+
+import io.typeset.sphinx.exceptions.InvalidNodeException;
+import io.typeset.sphinx.generators.ds.GenerationStats;
+import io.typeset.sphinx.generators.ds.ReachabilityIndex;
+import io.typeset.sphinx.model.GraphNode;
+import io.typeset.sphinx.model.NodeType;
+import io.typeset.sphinx.model.assertions.Clause;
+import io.typeset.sphinx.model.assertions.ExplicitAssertion;
+import io.typeset.sphinx.model.assertions.Literal;
+
+/**
+ * The Class FeasiblePathSearch. Finds the cheapest path between two nodes of
+ * the graph that satisfies the preconditions of every control it clicks. The
+ * cost of a path is the expected runtime of walking it in the generated test,
+ * taken from an {@link ActionCostModel}.
+ *
+ * Preconditions are checked while nodes are expanded rather than on complete
+ * paths. A search state is a node together with the set of constraining nodes
+ * (nodes referred to by some precondition) visited before it, so a path may
+ * revisit a node when that makes a precondition true, while equivalent states
+ * are expanded only once. As paths are capped at a maximum length, a state is
+ * expanded again when it is reached by a shorter path than before, which may
+ * still reach the target within the cap where the cheaper one could not.
+ * Preconditions are compiled once into word masks over the constraining nodes,
+ * so any conjunction of (possibly negated) disjunctions is checked with a few
+ * word operations per expansion. Successors that cannot reach the target at all
+ * are pruned using the reachability index.
+ */
+public class FeasiblePathSearch {
+	private static final Logger logger = LogManager.getLogger("FeasiblePathSearch");
+
+	/** Orders states by cost, and by creation order for equal costs. */
+	private static final Comparator<SearchState> STATE_ORDER = new Comparator<SearchState>() {
+		@Override
+		public int compare(SearchState s1, SearchState s2) {
+			int byCost = Double.compare(s1.getCost(), s2.getCost());
+			if (byCost != 0) {
+				return byCost;
+			}
+			return Long.compare(s1.getSequence(), s2.getSequence());
+		}
+	};
+
+	/** The graph to search. */
+	private DefaultDirectedGraph<GraphNode, DefaultEdge> graph;
+
+	/** The reachability index of the graph. */
+	private ReachabilityIndex reachabilityIndex;
+
+	/** The runtime cost of every node. */
+	private ActionCostModel costModel;
+
+	/** The maximum number of edges in a returned path. */
+	private int maxLength;
+
+	/** Bit index of every node referred to by a precondition. */
+	private Map<GraphNode, Integer> constrainingNodes;
+
+	/** The compiled precondition of every control that has one. */
+	private Map<GraphNode, CompiledPrecondition> preconditions;
+
+	/**
+	 * Instantiates a new feasible path search.
+	 *
+	 * @param graph
+	 *            the graph
+	 * @param reachabilityIndex
+	 *            the reachability index of the graph
+	 * @param costModel
+	 *            the runtime cost of every node
+	 * @param maxLength
+	 *            the maximum number of edges in a path
+	 */
+	public FeasiblePathSearch(DefaultDirectedGraph<GraphNode, DefaultEdge> graph,
+			ReachabilityIndex reachabilityIndex, ActionCostModel costModel, int maxLength) {
+		this.graph = graph;
+		this.reachabilityIndex = reachabilityIndex;
+		this.costModel = costModel;
+		this.maxLength = maxLength;
+		this.constrainingNodes = indexConstrainingNodes();
+		this.preconditions = compilePreconditions();
+	}
+
+	/**
+	 * Finds the cheapest feasible path from source to target.
+	 *
+	 * @param source
+	 *            the source node
+	 * @param target
+	 *            the target node
+	 * @return the path, or null if no feasible path exists within the maximum
+	 *         length
+	 */
+	public GraphPath<GraphNode, DefaultEdge> findPath(GraphNode source, GraphNode target) {
+		if (source == null || target == null) {
+			throw new InvalidNodeException("node null cannot proceed");
+		}
+		if (!reachabilityIndex.canReach(source, target)) {
+			logger.info(target + " is not reachable from " + source);
+			return null;
+		}
+
+		PriorityQueue<SearchState> open = new PriorityQueue<>(11, STATE_ORDER);
+		Map<GraphNode, Map<NodeMask, Integer>> closed = new HashMap<>();
+		long sequence = 0;
+		open.add(new SearchState(source, new NodeMask(constrainingNodes.size()), null, null, 0, sequence++));
+
+		int expanded = 0;
+		int rejected = 0;
+		while (!open.isEmpty()) {
+			SearchState state = open.poll();
+			if (!close(closed, state.getNode(), state.getVisited(), state.getLength())) {
+				continue;
+			}
+			expanded++;
+
+			GraphNode node = state.getNode();
+			if (node == target && state.getLength() > 0) {
+				logger.info("Feasible path to " + target + " found after expanding " + expanded + " states");
+				countPaths(expanded, rejected);
+				return toPath(source, target, state);
+			}
+			if (state.getLength() >= maxLength || !satisfiesPrecondition(node, state.getVisited())) {
+				rejected++;
+				continue;
+			}
+
+			double cost = state.getCost() + costModel.getCost(node);
+			NodeMask visited = state.getVisited();
+			Integer index = constrainingNodes.get(node);
+			if (index != null) {
+				visited = visited.with(index);
+			}
+
+			int length = state.getLength() + 1;
+			for (DefaultEdge edge : graph.outgoingEdgesOf(node)) {
+				GraphNode successor = graph.getEdgeTarget(edge);
+				if (!reachabilityIndex.canReach(successor, target) || isClosed(closed, successor, visited, length)) {
+					continue;
+				}
+				open.add(new SearchState(successor, visited, state, edge, cost, sequence++));
+			}
+		}
+
+		logger.info("No feasible path to " + target + " after expanding " + expanded + " states");
+		countPaths(expanded, rejected);
+		return null;
+	}
+
+	/**
+	 * Adds the partial paths a search expanded, and those it dropped, to the
+	 * generation stats.
+	 */
+	private void countPaths(int expanded, int rejected) {
+		GenerationStats.count(GenerationStats.PATHS_ENUMERATED, expanded);
+		GenerationStats.count(GenerationStats.PATHS_REJECTED, rejected);
+	}
+
+	/**
+	 * Checks if a node may be left given the constraining nodes visited so far.
+	 * Only controls carry preconditions.
+	 *
+	 * @param node
+	 *            the node
+	 * @param visited
+	 *            the visited constraining nodes
+	 * @return true, if the precondition holds
+	 */
+	private boolean satisfiesPrecondition(GraphNode node, NodeMask visited) {
+		CompiledPrecondition precondition = preconditions.get(node);
+		return precondition == null || precondition.isSatisfied(visited);
+	}
+
+	private Map<GraphNode, Integer> indexConstrainingNodes() {
+		Map<GraphNode, Integer> index = new HashMap<>();
+		for (GraphNode node : graph.vertexSet()) {
+			ExplicitAssertion precondition = node.getParsedPreCondition();
+			if (precondition == null) {
+				continue;
+			}
+			for (Clause clause : precondition.getclauses()) {
+				for (Literal literal : clause.getLiterals()) {
+					if (!index.containsKey(literal.getNode())) {
+						index.put(literal.getNode(), index.size());
+					}
+				}
+			}
+		}
+		logger.debug("Constraining nodes : " + index.keySet());
+		return index;
+	}
+
+	private Map<GraphNode, CompiledPrecondition> compilePreconditions() {
+		Map<GraphNode, CompiledPrecondition> compiled = new HashMap<>();
+		for (GraphNode node : graph.vertexSet()) {
+			ExplicitAssertion precondition = node.getParsedPreCondition();
+			if (node.getNodeType() == NodeType.CONTROL && precondition != null) {
+				compiled.put(node, new CompiledPrecondition(precondition, constrainingNodes));
+			}
+		}
+		return compiled;
+	}
+
+	/**
+	 * Closes a state, unless it was already closed with a path no longer than
+	 * this one.
+	 *
+	 * @return true, if the state is to be expanded
+	 */
+	private boolean close(Map<GraphNode, Map<NodeMask, Integer>> closed, GraphNode node, NodeMask visited,
+			int length) {
+		Map<NodeMask, Integer> states = closed.get(node);
+		if (states == null) {
+			states = new HashMap<>();
+			closed.put(node, states);
+		}
+		Integer shortest = states.get(visited);
+		if (shortest != null && shortest <= length) {
+			return false;
+		}
+		states.put(visited, length);
+		return true;
+	}
+
+	private boolean isClosed(Map<GraphNode, Map<NodeMask, Integer>> closed, GraphNode node, NodeMask visited,
+			int length) {
+		Map<NodeMask, Integer> states = closed.get(node);
+		if (states == null) {
+			return false;
+		}
+		Integer shortest = states.get(visited);
+		return shortest != null && shortest <= length;
+	}
+
+	private GraphPath<GraphNode, DefaultEdge> toPath(GraphNode source, GraphNode target, SearchState state) {
+		List<DefaultEdge> edges = new ArrayList<>();
+		double cost = state.getCost();
+		while (state.getParent() != null) {
+			edges.add(state.getEdge());
+			state = state.getParent();
+		}
+		Collections.reverse(edges);
+		return new GraphWalk<>(graph, source, target, edges, cost);
+	}
+}
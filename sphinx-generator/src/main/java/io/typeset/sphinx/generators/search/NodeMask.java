@@ -0,0 +1,106 @@
+package io.typeset.sphinx.generators.search;
+
+import java.util.Arrays;
+
+/**
+ * The Class NodeMask. An immutable set of constraining node indices packed
+ * into words, used as the visited set of a search state and as the operand
+ * of compiled preconditions.
+ */
+final class NodeMask {
+
+	/** The bits, one per constraining node index. */
+	private final long[] words;
+
+	/**
+	 * Instantiates an empty mask.
+	 *
+	 * @param size the number of constraining nodes
+	 */
+	NodeMask(int size) {
+		this.words = new long[(size + 63) >>> 6];
+	}
+
+	private NodeMask(long[] words) {
+		this.words = words;
+	}
+
+	/**
+	 * Checks if an index is in the mask.
+	 *
+	 * @param index the index
+	 * @return true, if it is set
+	 */
+	boolean get(int index) {
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Returns this mask with an index added, sharing this instance if the index
+	 * is already set.
+	 *
+	 * @param index the index
+	 * @return the mask
+	 */
+	NodeMask with(int index) {
+		if (get(index)) {
+			return this;
+		}
+		long[] copy = words.clone();
+		copy[index >>> 6] |= 1L << index;
+		return new NodeMask(copy);
+	}
+
+	/**
+	 * Checks if the mask shares any index with the given words.
+	 *
+	 * @param other the words, of the same length as this mask
+	 * @return true, if some index is in both
+	 */
+	boolean intersects(long[] other) {
+		for (int i = 0; i < words.length; i++) {
+			if ((words[i] & other[i]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if the mask contains every index of the given words.
+	 *
+	 * @param other the words, of the same length as this mask
+	 * @return true, if every index of other is in this mask
+	 */
+	boolean containsAll(long[] other) {
+		for (int i = 0; i < words.length; i++) {
+			if ((other[i] & ~words[i]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(words);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof NodeMask)) {
+			return false;
+		}
+		return Arrays.equals(words, ((NodeMask) obj).words);
+	}
+
+}
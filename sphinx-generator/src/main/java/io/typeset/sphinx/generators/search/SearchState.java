@@ -0,0 +1,83 @@
+package io.typeset.sphinx.generators.search;
+
+import org.jgrapht.graph.DefaultEdge;
+
+import io.typeset.sphinx.model.GraphNode;
+
+/**
+ * The Class SearchState. A node of the search tree explored by
+ * {@link FeasiblePathSearch}: a graph node together with the constraining
+ * nodes already visited on the way to it.
+ */
+class SearchState {
+
+	/** The graph node reached. */
+	private final GraphNode node;
+
+	/** The constraining nodes visited strictly before this node. */
+	private final NodeMask visited;
+
+	/** The state this one was expanded from. */
+	private final SearchState parent;
+
+	/** The edge taken from the parent. */
+	private final DefaultEdge edge;
+
+	/** The number of edges from the search source. */
+	private final int length;
+
+	/** The cost accumulated from the search source. */
+	private final double cost;
+
+	/** The order in which the state was created, used to break ties. */
+	private final long sequence;
+
+	/**
+	 * Instantiates a new search state.
+	 *
+	 * @param node the node
+	 * @param visited the visited constraining nodes
+	 * @param parent the parent state
+	 * @param edge the edge from the parent
+	 * @param cost the accumulated cost
+	 * @param sequence the creation order
+	 */
+	SearchState(GraphNode node, NodeMask visited, SearchState parent, DefaultEdge edge, double cost, long sequence) {
+		this.node = node;
+		this.visited = visited;
+		this.parent = parent;
+		this.edge = edge;
+		this.length = parent == null ? 0 : parent.length + 1;
+		this.cost = cost;
+		this.sequence = sequence;
+	}
+
+	GraphNode getNode() {
+		return node;
+	}
+
+	NodeMask getVisited() {
+		return visited;
+	}
+
+	SearchState getParent() {
+		return parent;
+	}
+
+	DefaultEdge getEdge() {
+		return edge;
+	}
+
+	int getLength() {
+		return length;
+	}
+
+	double getCost() {
+		return cost;
+	}
+
+	long getSequence() {
+		return sequence;
+	}
+
+}
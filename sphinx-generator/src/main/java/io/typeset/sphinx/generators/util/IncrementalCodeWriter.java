@@ -0,0 +1,90 @@
+package io.typeset.sphinx.generators.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JPackage;
+
+import io.typeset.sphinx.generators.ds.GenerationStats;
+
+/**
+ * The Class IncrementalCodeWriter. Writes the files of a code model under a
+ * directory, leaving files whose content has not changed untouched, so their
+ * timestamps stay the same and the test project does not recompile them.
+ */
+public class IncrementalCodeWriter extends CodeWriter {
+	private static final Logger logger = LogManager.getLogger("IncrementalCodeWriter");
+
+	/** The directory to write to. */
+	private File target;
+
+	/** The files emitted, relative to the target directory. */
+	private List<String> files = new ArrayList<>();
+
+	/**
+	 * Instantiates a new incremental code writer.
+	 *
+	 * @param target
+	 *            the directory to write to
+	 */
+	public IncrementalCodeWriter(File target) {
+		this.target = target;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.sun.codemodel.CodeWriter#openBinary(com.sun.codemodel.JPackage, java.lang.String)
+	 */
+	@Override
+	public OutputStream openBinary(JPackage pkg, String fileName) throws IOException {
+		String path = fileName;
+		if (!pkg.isUnnamed()) {
+			path = pkg.name().replace('.', '/') + "/" + fileName;
+		}
+		files.add(path);
+		final File file = new File(target, path);
+
+		return new ByteArrayOutputStream() {
+			@Override
+			public void close() throws IOException {
+				super.close();
+				byte[] content = toByteArray();
+				if (file.isFile() && Arrays.equals(content, Files.readAllBytes(file.toPath()))) {
+					logger.debug("Unchanged " + file);
+					GenerationStats.count(GenerationStats.CLASSES_UNCHANGED, 1);
+					return;
+				}
+				file.getParentFile().mkdirs();
+				Files.write(file.toPath(), content);
+				logger.debug("Wrote " + file);
+				GenerationStats.count(GenerationStats.CLASSES_WRITTEN, 1);
+				GenerationStats.count(GenerationStats.BYTES_WRITTEN, content.length);
+			}
+		};
+	}
+
+	/* (non-Javadoc)
+	 * @see com.sun.codemodel.CodeWriter#close()
+	 */
+	@Override
+	public void close() throws IOException {
+	}
+
+	/**
+	 * Gets the files emitted, written or not.
+	 *
+	 * @return the paths relative to the target directory
+	 */
+	public List<String> getFiles() {
+		return files;
+	}
+}
@@ -1,5 +1,6 @@
 package io.typeset.sphinx.model;
 import java.util.List;
+import java.util.Map;
 
 /**
  * YML model for Page.
@@ -14,6 +15,13 @@ public class Page extends Screen{
 	
 	/** The root. */
 	private Boolean root;
+
+	/**
+	 * The state that opens the page directly: cookies, localStorage,
+	 * sessionStorage and query entries by name. Pages without it are only
+	 * reached through the UI.
+	 */
+	private Map<String, Map<String, String>> state;
 	
 	/**
 	 * Gets the screens.
@@ -65,4 +73,22 @@ public class Page extends Screen{
 		this.root = root;
 	}
 
+	/**
+	 * Gets the state.
+	 *
+	 * @return the state
+	 */
+	public Map<String, Map<String, String>> getState() {
+		return state;
+	}
+
+	/**
+	 * Sets the state.
+	 *
+	 * @param state the new state
+	 */
+	public void setState(Map<String, Map<String, String>> state) {
+		this.state = state;
+	}
+
 }
@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
@@ -18,13 +19,22 @@ public class ConfigReader {
 	public static String outputDir = null;
 	public static boolean generateClasses = false;
 	public static boolean debugMode = false;
+	public static boolean incremental = false;
+	public static boolean executionTree = false;
+	public static boolean fastForward = false;
+	public static boolean checkpoints = false;
+	public static boolean stepEvents = false;
+	public static String parallel = "none";
+	public static int threadCount = 1;
 	public static List<String> pageImplictFunc = new ArrayList<String>();
 	public static List<String> intermImplictFunc = new ArrayList<String>();
 	public static List<String> controlImplictFunc = new ArrayList<String>();
 	public static List<String> requiresData = new ArrayList<String>();
 	public static List<String> tests = new ArrayList<String>();
 	public static String homepage = null;
+	public static String actionTimings = null;
 	private static final Logger logger = LogManager.getLogger("ConfigReader");
+	private static final List<String> PARALLEL_MODES = Arrays.asList("none", "methods", "classes", "instances");
 
 	public static void read(String filename) {
 
@@ -57,10 +67,62 @@ public class ConfigReader {
 			if (debugModeStr != null && debugModeStr.toLowerCase().equals("true")) {
 				debugMode = true;
 			}
+			// optional, regenerate only the specs whose inputs changed
+			String incrementalStr = prop.getProperty("incremental");
+			if (incrementalStr != null && incrementalStr.trim().toLowerCase().equals("true")) {
+				incremental = true;
+			}
+			// optional, run post-spec chains as one tree sharing their prefixes
+			String executionTreeStr = prop.getProperty("execution-tree");
+			if (executionTreeStr != null && executionTreeStr.trim().toLowerCase().equals("true")) {
+				executionTree = true;
+			}
+			// optional, let given() open pages that declare their state directly
+			String fastForwardStr = prop.getProperty("fast-forward");
+			if (fastForwardStr != null && fastForwardStr.trim().toLowerCase().equals("true")) {
+				fastForward = true;
+			}
+			// optional, let tests sharing a given() path restore its end state
+			String checkpointsStr = prop.getProperty("checkpoints");
+			if (checkpointsStr != null && checkpointsStr.trim().toLowerCase().equals("true")) {
+				checkpoints = true;
+			}
+			// optional, record every action, assertion and wait of the tests as a flight recorder event
+			String stepEventsStr = prop.getProperty("step-events");
+			if (stepEventsStr != null && stepEventsStr.trim().toLowerCase().equals("true")) {
+				stepEvents = true;
+			}
+			// optional, how TestNG runs the generated tests concurrently
+			String parallelStr = prop.getProperty("parallel");
+			if (parallelStr != null) {
+				parallel = parallelStr.trim().toLowerCase();
+				if (!PARALLEL_MODES.contains(parallel)) {
+					logger.error("Invalid parallel mode " + parallel);
+					throw new InvalidConfigException("Invalid parallel mode " + parallel);
+				}
+			}
+			String threadCountStr = prop.getProperty("thread-count");
+			if (threadCountStr != null) {
+				try {
+					threadCount = Integer.parseInt(threadCountStr.trim());
+				} catch (NumberFormatException e) {
+					threadCount = 0;
+				}
+				if (threadCount < 1) {
+					logger.error("Invalid thread count " + threadCountStr);
+					throw new InvalidConfigException("Invalid thread count " + threadCountStr);
+				}
+			}
 			logger.debug("Input directory : " + inputDir);
 			logger.debug("Output directory : " + outputDir);
 			logger.debug("Generate classes : " + generateClasses);
 			logger.debug("Debug mode : " + debugMode);
+			logger.debug("Incremental : " + incremental);
+			logger.debug("Execution tree : " + executionTree);
+			logger.debug("Fast forward : " + fastForward);
+			logger.debug("Checkpoints : " + checkpoints);
+			logger.debug("Step events : " + stepEvents);
+			logger.debug("Parallel : " + parallel + ", threads : " + threadCount);
 
 			if (inputDir != null) {
 				File file = new File(inputDir);
@@ -124,6 +186,16 @@ public class ConfigReader {
 				throw new InvalidConfigException("Insufficient number of control assertions provided");
 			}
 
+			// optional measured action timings, used to weigh paths
+			String timings_str = prop.getProperty("action-timings");
+			if (timings_str != null && !timings_str.trim().isEmpty()) {
+				actionTimings = timings_str.trim();
+				if (!actionTimings.startsWith("/")) {
+					actionTimings = System.getProperty("user.dir") + File.separator + actionTimings;
+				}
+				logger.debug("Action timings : " + actionTimings);
+			}
+
 			String test_str = prop.getProperty("tests").trim();
 			List<String> testList = listify(test_str);
 			if (testList != null) {
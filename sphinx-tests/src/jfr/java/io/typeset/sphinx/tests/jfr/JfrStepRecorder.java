@@ -0,0 +1,30 @@
+package io.typeset.sphinx.tests.jfr;
+
+import io.typeset.sphinx.tests.StepEvents;
+
+/**
+ * The flight recorder side of {@link StepEvents}, loaded by name when the
+ * runtime has jdk.jfr.
+ */
+public class JfrStepRecorder implements StepEvents.Recorder {
+
+	@Override
+	public Object begin(String spec, String node, String kind, String action, int elementIndex) {
+		StepEvent event = new StepEvent();
+		event.spec = spec;
+		event.node = node;
+		event.kind = kind;
+		event.action = action;
+		event.elementIndex = elementIndex;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void end(Object step) {
+		StepEvent event = (StepEvent) step;
+		if (event.shouldCommit()) {
+			event.commit();
+		}
+	}
+}
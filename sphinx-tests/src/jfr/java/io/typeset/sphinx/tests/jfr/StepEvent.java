@@ -0,0 +1,36 @@
+package io.typeset.sphinx.tests.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One action, assertion or wait of a generated test. The duration of the
+ * event is the duration of the step.
+ */
+@Name("io.typeset.sphinx.Step")
+@Label("Test Step")
+@Category("Sphinx")
+@Description("An action, assertion or wait of a generated test")
+@StackTrace(false)
+class StepEvent extends jdk.jfr.Event {
+
+	@Label("Spec")
+	String spec;
+
+	@Label("Node")
+	String node;
+
+	@Label("Kind")
+	@Description("action, assertion or wait")
+	String kind;
+
+	@Label("Action")
+	String action;
+
+	@Label("Element Index")
+	@Description("-1 if the step is not about a single element")
+	int elementIndex;
+}
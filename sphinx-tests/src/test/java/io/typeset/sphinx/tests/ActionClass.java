@@ -3,15 +3,26 @@ package io.typeset.sphinx.tests;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Iterator;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openqa.selenium.By;
+import org.openqa.selenium.Cookie;
 import org.openqa.selenium.Keys;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
+import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.openqa.selenium.InvalidElementStateException;
@@ -21,26 +32,189 @@ import io.typeset.sphinx.tests.ConfigClass;
 
 public class ActionClass extends ConfigClass {
 
+	// browser states saved at the branch points of an execution tree
+	private Stack<BrowserState> browserStates = new Stack<BrowserState>();
+
+	// failures of the branches of an execution tree
+	private List<String> branchFailures = new ArrayList<String>();
+
+	// the checkpoint restored by the running given() step, put back once the step is verified
+	private Checkpoints.Checkpoint restoredCheckpoint;
+
+	// true if an ancestor of arguments[0] has the tag arguments[1]
+	private static final String HAS_ANCESTOR = "var parent = arguments[0].parentElement;"
+			+ " return parent != null && parent.closest(arguments[1]) != null;";
+
+	// true if a descendant of arguments[0] matching arguments[1] has exactly the text arguments[2]
+	private static final String HAS_SPAN_TEXT = "var spans = arguments[0].querySelectorAll(arguments[1]);"
+			+ " for (var i = 0; i < spans.length; i++) { if (spans[i].innerText.trim() === arguments[2]) return true; }"
+			+ " return false;";
+
+	// the text of the first node matching the xpath arguments[1] from arguments[0], or null
+	private static final String CAPTION_TEXT = "var caption = document.evaluate(arguments[1], arguments[0], null,"
+			+ " XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;"
+			+ " return caption == null ? null : caption.innerText.trim();";
+
+	// puts the caret at the start (arguments[1]) or end of arguments[0], focusing its editable host
+	private static final String PLACE_CARET = "var e = arguments[0], start = arguments[1];"
+			+ " if (typeof e.setSelectionRange == 'function' && typeof e.value == 'string') {"
+			+ "   var at = start ? 0 : e.value.length; e.focus();"
+			+ "   try { e.setSelectionRange(at, at); return true; } catch (err) { return false; } }"
+			+ " if (!e.isContentEditable) return false;"
+			+ " var host = e;"
+			+ " while (host.parentElement && host.parentElement.isContentEditable) host = host.parentElement;"
+			+ " host.focus();"
+			+ " var range = document.createRange(); range.selectNodeContents(e); range.collapse(start);"
+			+ " var selection = window.getSelection(); selection.removeAllRanges(); selection.addRange(range);"
+			+ " return true;";
+
+	private static final String CAPTION_XPATH = "//span[@data-spx-ctl-id=\"editor_caption-text\"]";
+
+	// given() steps may open their page directly; every nth such step replays the UI path instead
+	private static final boolean FAST_FORWARD = !"false".equals(System.getProperty("sphinx.fastForward"));
+	private static final int VERIFY_EVERY = Integer.getInteger("sphinx.fastForward.verifyEvery", 0);
+	private static final AtomicInteger fastForwards = new AtomicInteger();
+
+	// the element resolver of every test thread
+	private static final ThreadLocal<ElementResolver> resolvers = new ThreadLocal<ElementResolver>();
+
 	public void visit(String url) {
-		driver.navigate().to(url);
+		getDriver().navigate().to(url);
+		getResolver().invalidate();
 	}
 
 	public void goToHomePage() throws IOException {
-		final URL url = new URL(driver.getCurrentUrl());
+		final URL url = new URL(getDriver().getCurrentUrl());
 		final HttpURLConnection hurcon = (HttpURLConnection) url.openConnection();
 		hurcon.setRequestMethod("GET");
 		hurcon.connect();
     System.out.println("Status code for " + url + " :" + hurcon.getResponseCode());
 	}
 
-	public boolean atPage(String url) {
-		try {
-			Thread.sleep(10000);
-		} catch (final InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	/**
+	 * Opens a page directly, with the state its screen needs, instead of
+	 * replaying the steps that lead there. The state comes as kind, name, value
+	 * triples, the kinds being cookies, localStorage, sessionStorage and query.
+	 *
+	 * @return true if the browser got to the page and can see the screen;
+	 *         false if the caller has to replay the steps, because
+	 *         fast-forwarding is off, this is a verification run or the page
+	 *         did not open on the screen
+	 */
+	public boolean fastForward(String pageUrl, By screen, String... state) throws IOException {
+		if (!FAST_FORWARD) {
+			return false;
+		}
+		if (VERIFY_EVERY > 0 && fastForwards.incrementAndGet() % VERIFY_EVERY == 0) {
+			System.out.println("Verification run, replaying the steps to " + pageUrl);
+			return false;
+		}
+
+		BrowserState start = BrowserState.capture(getDriver());
+		Set<Cookie> cookies = new HashSet<Cookie>();
+		Map<String, String> localStorage = new HashMap<String, String>();
+		Map<String, String> sessionStorage = new HashMap<String, String>();
+		StringBuilder query = new StringBuilder();
+		for (int idx = 0; idx + 2 < state.length; idx += 3) {
+			String kind = state[idx];
+			if (kind.equals("cookies")) {
+				cookies.add(new Cookie(state[idx + 1], state[idx + 2]));
+			} else if (kind.equals("localStorage")) {
+				localStorage.put(state[idx + 1], state[idx + 2]);
+			} else if (kind.equals("sessionStorage")) {
+				sessionStorage.put(state[idx + 1], state[idx + 2]);
+			} else if (kind.equals("query")) {
+				query.append(query.length() == 0 ? "" : "&").append(URLEncoder.encode(state[idx + 1], "UTF-8"))
+						.append('=').append(URLEncoder.encode(state[idx + 2], "UTF-8"));
+			}
+		}
+
+		String target = toAbsoluteUrl(pageUrl, start.getUrl());
+		if (query.length() > 0) {
+			target += (target.contains("?") ? "&" : "?") + query;
+		}
+		BrowserState.of(target, cookies, localStorage, sessionStorage).restore(getDriver());
+		getResolver().invalidate();
+		if (atPage(pageUrl) && canSee(screen, "0")) {
+			System.out.println("Fast-forwarded to " + target);
+			return true;
+		}
+
+		System.out.println("Fast-forward to " + target + " failed, replaying the steps");
+		start.restore(getDriver());
+		getResolver().invalidate();
+		return false;
+	}
+
+	/**
+	 * Restores the checkpoint of a path, if there is a live one, instead of
+	 * walking the path through the UI.
+	 *
+	 * @return true if the browser is back at the end of the path; false if the
+	 *         caller has to walk it
+	 */
+	public boolean restoreCheckpoint(String key) {
+		Checkpoints.Checkpoint checkpoint = Checkpoints.take(key);
+		if (checkpoint == null) {
+			return false;
+		}
+
+		BrowserState start = BrowserState.capture(getDriver());
+		BrowserState state = checkpoint.getState();
+		state.restore(getDriver());
+		getResolver().invalidate();
+		if (withoutFragment(getDriver().getCurrentUrl()).equals(withoutFragment(state.getUrl()))) {
+			System.out.println("Restored checkpoint " + key);
+			restoredCheckpoint = checkpoint;
+			return true;
+		}
+
+		System.out.println("Checkpoint " + key + " no longer opens " + state.getUrl() + ", dropping it");
+		start.restore(getDriver());
+		getResolver().invalidate();
+		return false;
+	}
+
+	/**
+	 * Saves the state at the end of a verified path as its checkpoint, or puts
+	 * back the checkpoint the path was restored from.
+	 */
+	public void saveCheckpoint(String key) {
+		if (!Checkpoints.isEnabled()) {
+			return;
+		}
+		Checkpoints.Checkpoint checkpoint = restoredCheckpoint;
+		if (checkpoint == null) {
+			checkpoint = new Checkpoints.Checkpoint(BrowserState.capture(getDriver()), System.currentTimeMillis());
 		}
-		String pageUrl = driver.getCurrentUrl().replace("https://", "").replace("http://", "").replace("www.", "");
+		restoredCheckpoint = null;
+		Checkpoints.put(key, checkpoint);
+	}
+
+	private String withoutFragment(String url) {
+		int fragment = url.indexOf('#');
+		return fragment < 0 ? url : url.substring(0, fragment);
+	}
+
+	private String toAbsoluteUrl(String pageUrl, String currentUrl) {
+		if (pageUrl.contains("://")) {
+			return pageUrl;
+		}
+		if (pageUrl.startsWith("/")) {
+			return BrowserState.getOrigin(currentUrl) + pageUrl;
+		}
+		int scheme = currentUrl.indexOf("://");
+		return (scheme < 0 ? "https://" : currentUrl.substring(0, scheme + 3)) + pageUrl;
+	}
+
+	public boolean atPage(String url) {
+		// wait up to 10 s in all for the url and then for the page to settle
+		long deadline = System.currentTimeMillis() + 10000;
+		AdaptiveWait wait = new AdaptiveWait(getDriver());
+		wait.untilUrlContains(url, 10);
+		wait.untilQuiet(Math.max(1, (deadline - System.currentTimeMillis()) / 1000));
+		getResolver().invalidate();
+		String pageUrl = getDriver().getCurrentUrl().replace("https://", "").replace("http://", "").replace("www.", "");
 		// if (pageUrl.startsWith(url)) {
 		if (pageUrl.contains(url)) {
 			System.out.println("At page " + url);
@@ -55,15 +229,11 @@ public class ActionClass extends ConfigClass {
 	{
 		int eNo = getElementNumber(elementNumber);
 		System.out.println("Clicking " + locator.toString());
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
-		final WebElement element = wait.until(ExpectedConditions.elementToBeClickable(locator));
-		driver.findElements(locator).get(eNo).click();
-		try {
-			Thread.sleep(5000);
-		} catch (final InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
+		getResolver().invalidate();
+		wait.until(clickable(locator, eNo)).click();
+		getResolver().invalidate();
+		new AdaptiveWait(getDriver()).untilQuiet(5);
 	}
 
 	public boolean contains(By locator, String expectedContent, String elementNumber) {
@@ -71,7 +241,7 @@ public class ActionClass extends ConfigClass {
 			return true;
 		}
 		int eNo = getElementNumber(elementNumber);
-		String observedContent = driver.findElements(locator).get(eNo).getText();
+		String observedContent = getText(locator, eNo);
 		System.out.println("Obseved content in " + locator + "  is  " + observedContent);
 		if (observedContent.toLowerCase().contains(expectedContent.toLowerCase())) {
 			return true;
@@ -85,7 +255,7 @@ public class ActionClass extends ConfigClass {
 			return true;
 		}
 		int eNo = getElementNumber(elementNumber);
-		String observedContent = driver.findElements(locator).get(eNo).getText();
+		String observedContent = getText(locator, eNo);
 		System.out.println("Obseved content in " + locator + "  is  " + observedContent);
 		if (observedContent.length() == 0) {
 			return true;
@@ -98,7 +268,7 @@ public class ActionClass extends ConfigClass {
 			return true;
 		}
 		int eNo = getElementNumber(elementNumber);
-		if (driver.findElements(locator).size() > eNo) {
+		if (getResolver().find(locator, eNo) != null) {
 			System.out.println("Can see " + locator);
 			return true;
 		} else {
@@ -109,8 +279,8 @@ public class ActionClass extends ConfigClass {
 	}
 
 	public void scroll_down_vertical(By locator, String byPixles, String elementNumber) throws InterruptedException {
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
-		JavascriptExecutor jse = (JavascriptExecutor) driver;
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
+		JavascriptExecutor jse = (JavascriptExecutor) getDriver();
 		int scrollY = 250;
 		int scrollX = 0;
 		try {
@@ -123,8 +293,8 @@ public class ActionClass extends ConfigClass {
 	}
 
 	public void scroll_up_vertical(By locator, String byPixles, String elementNumber) throws InterruptedException {
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
-		JavascriptExecutor jse = (JavascriptExecutor) driver;
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
+		JavascriptExecutor jse = (JavascriptExecutor) getDriver();
 		int scrollY = -250;
 		int scrollX = 0;
 		try {
@@ -137,8 +307,8 @@ public class ActionClass extends ConfigClass {
 	}
 
 	public void scroll_up_horizontal(By locator, String byPixles, String elementNumber) throws InterruptedException {
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
-		JavascriptExecutor jse = (JavascriptExecutor) driver;
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
+		JavascriptExecutor jse = (JavascriptExecutor) getDriver();
 		int scrollX = -250;
 		int scrollY = 0;
 		try {
@@ -151,8 +321,8 @@ public class ActionClass extends ConfigClass {
 	}
 
 	public void scroll_down_horizontal(By locator, String byPixles, String elementNumber) throws InterruptedException {
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
-		JavascriptExecutor jse = (JavascriptExecutor) driver;
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
+		JavascriptExecutor jse = (JavascriptExecutor) getDriver();
 		int scrollX = 250;
 		int scrollY = 0;
 		try {
@@ -178,161 +348,86 @@ public class ActionClass extends ConfigClass {
 		System.out.println("Type " + data);
 
 		data = replaceTemplates(data);
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
-		final WebElement element = wait.until(ExpectedConditions.elementToBeClickable(locator));
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
+		getResolver().invalidate();
+		final WebElement element = wait.until(clickable(locator, 0));
 		try {
-			driver.findElement(locator).click();
+			element.click();
 			waitForAShortWhile();
 		} catch (final InvalidElementStateException e) {
 			System.out.println("Exception while clearing");
 			waitForALongWhile();
 		}
 
-		driver.findElement(locator).sendKeys(data);
+		element.sendKeys(data);
+		getResolver().invalidate();
 	}
 
 	public boolean heading(By locator, String elementNumber) {
 		if (locator == null) {
 			return false;
 		}
-
-		int eNo = getElementNumber(elementNumber);
-		WebElement element = driver.findElements(locator).get(eNo);
-
-		return isChildOf(element, "h1");
+		return (Boolean) executeOn(locator, getElementNumber(elementNumber), HAS_ANCESTOR, "h1");
 	}
 
 	public boolean subheading1(By locator, String elementNumber) {
 		if (locator == null) {
 			return false;
 		}
-
-		int eNo = getElementNumber(elementNumber);
-		WebElement element = driver.findElements(locator).get(eNo);
-
-		return isChildOf(element, "h1");
+		return (Boolean) executeOn(locator, getElementNumber(elementNumber), HAS_ANCESTOR, "h1");
 	}
 
 	public boolean subheading2(By locator, String elementNumber) {
 		if (locator == null) {
 			return false;
 		}
-
-		int eNo = getElementNumber(elementNumber);
-		WebElement element = driver.findElements(locator).get(eNo);
-
-		return isChildOf(element, "h2");
+		return (Boolean) executeOn(locator, getElementNumber(elementNumber), HAS_ANCESTOR, "h2");
 	}
 
 	public boolean subheading3(By locator, String elementNumber) {
 		if (locator == null) {
 			return false;
 		}
-
-		int eNo = getElementNumber(elementNumber);
-		WebElement element = driver.findElements(locator).get(eNo);
-
-		return isChildOf(element, "h3");
+		return (Boolean) executeOn(locator, getElementNumber(elementNumber), HAS_ANCESTOR, "h3");
 	}
 
 	public boolean subheading4(By locator, String elementNumber) {
 		if (locator == null) {
 			return false;
 		}
-
-		int eNo = getElementNumber(elementNumber);
-		WebElement element = driver.findElements(locator).get(eNo);
-
-		return isChildOf(element, "h4");
+		return (Boolean) executeOn(locator, getElementNumber(elementNumber), HAS_ANCESTOR, "h4");
 	}
 
 	public boolean subheading5(By locator, String elementNumber) {
 		if (locator == null) {
 			return false;
 		}
-
-		int eNo = getElementNumber(elementNumber);
-		WebElement element = driver.findElements(locator).get(eNo);
-
-		return isChildOf(element, "h5");
+		return (Boolean) executeOn(locator, getElementNumber(elementNumber), HAS_ANCESTOR, "h5");
 	}
 
 	public boolean subheading6(By locator, String elementNumber) {
 		if (locator == null) {
 			return false;
 		}
-
-		int eNo = getElementNumber(elementNumber);
-		WebElement element = driver.findElements(locator).get(eNo);
-
-		return isChildOf(element, "h6");
+		return (Boolean) executeOn(locator, getElementNumber(elementNumber), HAS_ANCESTOR, "h6");
 	}
 
 	public boolean isChildOf(WebElement element, String tagName) {
-
-		WebElement parent = getParent(element);
-		while (parent != null) {
-			if (parent.getTagName().toLowerCase().equals(tagName.toLowerCase())) {
-				return true;
-			}
-
-			try {
-				parent = getParent(parent);
-			} catch (NoSuchElementException e) {
-				parent = null;
-			}
-
-		}
-
-		return false;
-	}
-
-	private WebElement getParent(WebElement element) throws NoSuchElementException {
-		if (element.getTagName().equals("html")) {
-			throw new NoSuchElementException("No parent found for this");
-		}
-		// System.out.println("Given: " + element.getTagName());
-		return element.findElement(By.xpath("./.."));
+		return (Boolean) ((JavascriptExecutor) getDriver()).executeScript(HAS_ANCESTOR, element, tagName);
 	}
 
 	public boolean containsBold(By locator, String text, String elementNumber) {
 		if (locator == null) {
 			return false;
 		}
-		int eNo = getElementNumber(elementNumber);
-		WebElement element = driver.findElements(locator).get(eNo);
-
-		List<WebElement> spans = element.findElements(By.cssSelector("span.sc-strong"));
-
-		Iterator<WebElement> iterator = spans.iterator();
-		while (iterator.hasNext()) {
-			WebElement span = iterator.next();
-			if (span.getText().equals(text)) {
-				return true;
-			}
-		}
-
-		return false;
+		return (Boolean) executeOn(locator, getElementNumber(elementNumber), HAS_SPAN_TEXT, "span.sc-strong", text);
 	}
 
 	public boolean containsItalic(By locator, String text, String elementNumber) {
 		if (locator == null) {
 			return false;
 		}
-		int eNo = getElementNumber(elementNumber);
-		WebElement element = driver.findElements(locator).get(eNo);
-
-		List<WebElement> spans = element.findElements(By.cssSelector("span.sc-emphasis"));
-
-		Iterator<WebElement> iterator = spans.iterator();
-		while (iterator.hasNext()) {
-			WebElement span = iterator.next();
-			if (span.getText().equals(text)) {
-				return true;
-			}
-		}
-
-		return false;
+		return (Boolean) executeOn(locator, getElementNumber(elementNumber), HAS_SPAN_TEXT, "span.sc-emphasis", text);
 	}
 
 	public boolean enabled(By locator, String elementNumber) {
@@ -340,14 +435,12 @@ public class ActionClass extends ConfigClass {
 			return false;
 		}
 		int eNo = getElementNumber(elementNumber);
-		List<WebElement> elements = driver.findElements(locator);
-		if (eNo > elements.size()) {
+		if (getResolver().find(locator, eNo) == null) {
 			System.out.println("element index higher than present at the moment");
 			return false;
 		}
-		WebElement element = elements.get(eNo);
 
-		String value = element.getAttribute("data-spx-state");
+		String value = getAttribute(locator, eNo, "data-spx-state");
 		if (value.equals("enabled")) {
 			System.out.print(locator + " is enabled ");
 			return true;
@@ -362,14 +455,12 @@ public class ActionClass extends ConfigClass {
 			return false;
 		}
 		int eNo = getElementNumber(elementNumber);
-		List<WebElement> elements = driver.findElements(locator);
-		if (eNo > elements.size()) {
+		if (getResolver().find(locator, eNo) == null) {
 			System.out.println("element index higher than present at the moment");
 			return false;
 		}
-		WebElement element = elements.get(eNo);
 
-		String value = element.getAttribute("data-spx-toggle");
+		String value = getAttribute(locator, eNo, "data-spx-toggle");
 		if (value.equals("true")) {
 			System.out.print(locator + " is toggled ");
 			return true;
@@ -381,34 +472,49 @@ public class ActionClass extends ConfigClass {
 
 	public void writeAtBegining(By locator, String data, String elementNumber) throws InterruptedException {
 		int eNo = getElementNumber(elementNumber);
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
 		data = substituteKeys(data);
 		System.out.println("Typing " + data);
 
-		final WebElement element = driver.findElements(locator).get(eNo);
+		getResolver().invalidate();
+		final WebElement element = getElement(locator, eNo);
 
-		int length = element.getSize().getWidth();
-		String[] movement = new String[length / 2];
-		for (int idx = 0; idx < length / 2; idx++) {
-			movement[idx] = Keys.ARROW_LEFT + "";
-		}
-		new Actions(driver).moveToElement(element).sendKeys(movement).sendKeys(data).perform();
+		moveCaret(element, true);
+		new Actions(getDriver()).sendKeys(data).perform();
+		getResolver().invalidate();
 	}
 
 	public void writeAtEnd(By locator, String data, String elementNumber) throws InterruptedException {
 		int eNo = getElementNumber(elementNumber);
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
 		data = substituteKeys(data);
 		System.out.println("Typing " + data);
 
-		final WebElement element = driver.findElements(locator).get(eNo);
+		getResolver().invalidate();
+		final WebElement element = getElement(locator, eNo);
+
+		moveCaret(element, false);
+		new Actions(getDriver()).sendKeys(data).perform();
+		getResolver().invalidate();
+	}
 
+	/**
+	 * Puts the caret at the start or end of an element with a single script,
+	 * through setSelectionRange for inputs and the Selection API otherwise.
+	 * Falls back to arrow keys if the element cannot take a caret that way.
+	 */
+	private void moveCaret(WebElement element, boolean atStart) {
+		Object placed = ((JavascriptExecutor) getDriver()).executeScript(PLACE_CARET, element, atStart);
+		if (Boolean.TRUE.equals(placed)) {
+			return;
+		}
+		System.out.println("Could not place the caret directly, using arrow keys");
 		int length = element.getSize().getWidth();
 		String[] movement = new String[length / 2];
 		for (int idx = 0; idx < length / 2; idx++) {
-			movement[idx] = Keys.ARROW_RIGHT + "";
+			movement[idx] = (atStart ? Keys.ARROW_LEFT : Keys.ARROW_RIGHT) + "";
 		}
-		new Actions(driver).moveToElement(element).sendKeys(movement).sendKeys(data).perform();
+		new Actions(getDriver()).moveToElement(element).sendKeys(movement).perform();
 	}
 
 	public void writeAtMiddle(By locator, String data, String elementNumber) throws InterruptedException {
@@ -417,9 +523,10 @@ public class ActionClass extends ConfigClass {
 
 	public void selectText(By locator, String elementNumber) throws InterruptedException {
 		int eNo = getElementNumber(elementNumber);
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
 
-		final WebElement element = driver.findElement(locator);
+		getResolver().invalidate();
+		final WebElement element = getElement(locator, 0);
 		System.out.println("Clicking " + locator.toString());
 		String paraId = "data-spx-ctl-id=\"editor_paragraph\"";
 		if(locator.toString().contains(paraId)){
@@ -428,8 +535,9 @@ public class ActionClass extends ConfigClass {
 		}
 
 		final int length = element.getSize().getWidth();
-		new Actions(driver).moveToElement(element).moveByOffset(-length / 2, 0).clickAndHold().moveByOffset(length, 0)
-				.release().perform();
+		new Actions(getDriver()).moveToElement(element).moveByOffset(-length / 2, 0).clickAndHold()
+				.moveByOffset(length, 0).release().perform();
+		getResolver().invalidate();
 	}
 
 	public String substituteKeys(String textData) {
@@ -458,31 +566,113 @@ public class ActionClass extends ConfigClass {
 		return action_no;
 	}
 
+	protected ElementResolver getResolver() {
+		ElementResolver resolver = resolvers.get();
+		if (resolver == null || resolver.getDriver() != getDriver()) {
+			resolver = new ElementResolver(getDriver());
+			resolvers.set(resolver);
+		}
+		return resolver;
+	}
+
+	private WebElement getElement(By locator, int eNo) {
+		WebElement element = getResolver().find(locator, eNo);
+		if (element == null) {
+			throw new NoSuchElementException("No element " + eNo + " for " + locator);
+		}
+		return element;
+	}
+
+	/**
+	 * A condition that resolves the element again on every poll, without the
+	 * implicit wait, and holds once it is displayed and enabled, so an element
+	 * that is not there yet is waited for by the explicit wait alone.
+	 */
+	private ExpectedCondition<WebElement> clickable(final By locator, final int eNo) {
+		return new ExpectedCondition<WebElement>() {
+			@Override
+			public WebElement apply(WebDriver driver) {
+				WebElement element = getResolver().findNow(locator, eNo);
+				try {
+					if (element != null && element.isDisplayed() && element.isEnabled()) {
+						return element;
+					}
+				} catch (StaleElementReferenceException e) {
+					// resolved again on the next poll
+				}
+				getResolver().invalidate();
+				return null;
+			}
+
+			@Override
+			public String toString() {
+				return "element " + eNo + " of " + locator + " to be clickable";
+			}
+		};
+	}
+
+	/**
+	 * Runs a script with the element as its first argument, so that a check
+	 * costs a single round trip.
+	 */
+	private Object executeOn(By locator, int eNo, String script, Object... args) {
+		Object[] arguments = new Object[args.length + 1];
+		System.arraycopy(args, 0, arguments, 1, args.length);
+		try {
+			arguments[0] = getElement(locator, eNo);
+			return ((JavascriptExecutor) getDriver()).executeScript(script, arguments);
+		} catch (StaleElementReferenceException e) {
+			getResolver().invalidate();
+			arguments[0] = getElement(locator, eNo);
+			return ((JavascriptExecutor) getDriver()).executeScript(script, arguments);
+		}
+	}
+
+	private String getText(By locator, int eNo) {
+		try {
+			return getElement(locator, eNo).getText();
+		} catch (StaleElementReferenceException e) {
+			getResolver().invalidate();
+			return getElement(locator, eNo).getText();
+		}
+	}
+
+	private String getAttribute(By locator, int eNo, String name) {
+		try {
+			return getElement(locator, eNo).getAttribute(name);
+		} catch (StaleElementReferenceException e) {
+			getResolver().invalidate();
+			return getElement(locator, eNo).getAttribute(name);
+		}
+	}
+
 	public void type(By locator, String data, String elementNumber) throws InterruptedException {
 		data = replaceTemplates(data);
 		int eNo = getElementNumber(elementNumber);
 		System.out.println("locator " + locator.toString());
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
 
-		final WebElement element = wait.until(ExpectedConditions.elementToBeClickable(locator));
-		driver.findElements(locator).get(eNo).click();
+		getResolver().invalidate();
+		wait.until(clickable(locator, eNo)).click();
 		waitForAWhile();
 
 		data = substituteKeys(data);
 
 		System.out.println("Type " + data);
-		new Actions(driver).sendKeys(driver.findElements(locator).get(eNo), data).perform();
+		getResolver().invalidate();
+		new Actions(getDriver()).sendKeys(getElement(locator, eNo), data).perform();
+		getResolver().invalidate();
 
 	}
 
 	public void editComponentCaption(By locator, String data, String elementNumber) throws InterruptedException {
 
 		int eNo = getElementNumber(elementNumber);
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
 
-		final WebElement element = wait.until(ExpectedConditions.elementToBeClickable(locator));
-		WebElement component = driver.findElements(locator).get(eNo);
-		By captionRelLocator = By.xpath("//span[@data-spx-ctl-id=\"editor_caption-text\"]");
+		getResolver().invalidate();
+		WebElement component = wait.until(clickable(locator, eNo));
+		By captionRelLocator = By.xpath(CAPTION_XPATH);
 		List<WebElement> foundCaptions = component.findElements(captionRelLocator);
 		if (foundCaptions.size() == 0) {
 			System.out.println("Didn't find any captions so returning");
@@ -494,14 +684,16 @@ public class ActionClass extends ConfigClass {
 		caption.click();
 
 		// Extracting the component again since the table is re-rendered upon click
-		component = driver.findElements(locator).get(eNo);
+		getResolver().invalidate();
+		component = getElement(locator, eNo);
 		caption = component.findElement(captionRelLocator);
 		System.out.println("Going to click second time");
 		caption.click();
 
 		data = substituteKeys(data);
 		System.out.println("Type " + data);
-		new Actions(driver).sendKeys(caption, data).perform();
+		new Actions(getDriver()).sendKeys(caption, data).perform();
+		getResolver().invalidate();
 
 	}
 
@@ -511,16 +703,11 @@ public class ActionClass extends ConfigClass {
 		}
 		int eNo = getElementNumber(elementNumber);
 
-		WebElement component = driver.findElements(locator).get(eNo);
-		By captionRelLocator = By.xpath("//span[@data-spx-ctl-id=\"editor_caption-text\"]");
-		List<WebElement> foundCaptions = component.findElements(captionRelLocator);
-		if (foundCaptions.size() == 0) {
+		String observedContent = (String) executeOn(locator, eNo, CAPTION_TEXT, CAPTION_XPATH);
+		if (observedContent == null) {
 			System.out.println("Didn't find any captions so returning");
 			return false;
 		}
-		WebElement caption = foundCaptions.get(0);
-
-		String observedContent = caption.getText();
 		System.out.println("Obseved content in " + locator + "  caption is  " + observedContent);
 		if (observedContent.toLowerCase().contains(expectedContent.toLowerCase())) {
 			return true;
@@ -531,9 +718,9 @@ public class ActionClass extends ConfigClass {
 
 	public boolean hasElementsTotal(By locator, String totalCount, String notUsed) {
 		System.out.println("checking count for " + locator.toString());
-		final WebDriverWait wait = new WebDriverWait(driver, 15);
+		final WebDriverWait wait = new WebDriverWait(getDriver(), 15);
 		final WebElement element = wait.until(ExpectedConditions.elementToBeClickable(locator));
-		int elementsFound = driver.findElements(locator).size();
+		int elementsFound = getDriver().findElements(locator).size();
 		int expectedCount = getElementNumber(totalCount);
 		System.out.println("expecting " + expectedCount + ", found " + elementsFound);
 
@@ -544,41 +731,67 @@ public class ActionClass extends ConfigClass {
 		}
 	}
 
+	/**
+	 * Starts a step of the test, recorded as a flight recorder event once
+	 * {@link #endStep()} is called. See {@link StepEvents}.
+	 */
+	public void beginStep(String spec, String node, String kind, String action, String elementNumber) {
+		StepEvents.begin(spec, node, kind, action, elementNumber);
+	}
+
+	public void endStep() {
+		StepEvents.end();
+	}
+
 	public void waitForALongWhile() {
-		try {
-			Thread.sleep(20000);
-		} catch (final InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		new AdaptiveWait(getDriver()).untilQuiet(20);
 	}
 
 	public void waitForAShortWhile() {
-		try {
-			Thread.sleep(2000);
-		} catch (final InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		new AdaptiveWait(getDriver()).untilQuiet(2);
 	}
 
 	public void waitForAWhile() {
-		try {
-			Thread.sleep(5000);
-		} catch (final InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		new AdaptiveWait(getDriver()).untilQuiet(5);
 	}
 
 	public void waitForPage(String urlFraction) // Waits for an element to be
 	{
 		try {
-			final WebDriverWait wait = new WebDriverWait(driver, 40);
+			final WebDriverWait wait = new WebDriverWait(getDriver(), 40);
 			wait.until(ExpectedConditions.urlContains(urlFraction));
 		} catch (final TimeoutException e) {
 			throw new TimeoutException("Error message:  " + e.getMessage());
 		}
 
 	}
+
+	public void pushBrowserState() {
+		browserStates.push(BrowserState.capture(getDriver()));
+	}
+
+	public void restoreBrowserState() {
+		browserStates.peek().restore(getDriver());
+		getResolver().invalidate();
+	}
+
+	public void popBrowserState() {
+		browserStates.pop();
+	}
+
+	public void branchFailed(String branch, Throwable failure) {
+		System.out.println("Branch " + branch + " failed : " + failure);
+		failure.printStackTrace();
+		String imagePath = Screenshot.takeScreenShot(getDriver(), branch + ".png");
+		System.out.println("Screenshot can be found at : " + imagePath);
+		branchFailures.add(branch + " : " + failure);
+	}
+
+	public void assertBranches() {
+		if (!branchFailures.isEmpty()) {
+			String message = branchFailures.size() + " branches failed " + branchFailures;
+			branchFailures.clear();
+			throw new AssertionError(message);
+		}
+	}
 }
@@ -0,0 +1,90 @@
+package io.typeset.sphinx.tests;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+/**
+ * Waits that poll for the page to actually be ready and return as soon as it
+ * is. The timeouts are only upper bounds: when one runs out the wait gives up
+ * quietly and the test goes on, as it did after the fixed sleeps these waits
+ * replace.
+ *
+ * The page counts as quiet when it has finished loading, has no XMLHttpRequest
+ * or fetch in flight and its DOM has not changed for QUIET_MILLIS. Requests
+ * and mutations are tracked by a small script installed in the page on the
+ * first poll after every navigation.
+ */
+public class AdaptiveWait {
+
+	public static final long POLL_MILLIS = 100;
+	public static final long QUIET_MILLIS = 500;
+
+	private static final String QUIET_SCRIPT = "var w = window;"
+			+ "if (!w.__sphinx) {"
+			+ "  var s = w.__sphinx = { pending: 0, lastChange: Date.now() };"
+			+ "  var send = XMLHttpRequest.prototype.send;"
+			+ "  XMLHttpRequest.prototype.send = function() {"
+			+ "    s.pending++; var done = false;"
+			+ "    this.addEventListener('loadend', function() {"
+			+ "      if (!done) { done = true; s.pending--; s.lastChange = Date.now(); } });"
+			+ "    return send.apply(this, arguments); };"
+			+ "  if (w.fetch) { var f = w.fetch; w.fetch = function() {"
+			+ "    s.pending++; var end = function() { s.pending--; s.lastChange = Date.now(); };"
+			+ "    var p = f.apply(this, arguments); p.then(end, end); return p; }; }"
+			+ "  new MutationObserver(function() { s.lastChange = Date.now(); })"
+			+ "    .observe(document, { childList: true, subtree: true, attributes: true, characterData: true });"
+			+ "  return false;"
+			+ "}"
+			+ "return document.readyState == 'complete' && w.__sphinx.pending == 0"
+			+ "  && Date.now() - w.__sphinx.lastChange >= arguments[0];";
+
+	private WebDriver driver;
+
+	public AdaptiveWait(WebDriver driver) {
+		this.driver = driver;
+	}
+
+	/**
+	 * Waits until the current URL contains a fraction.
+	 *
+	 * @return true, if it did before the timeout
+	 */
+	public boolean untilUrlContains(String urlFraction, long timeoutSeconds) {
+		return until(ExpectedConditions.urlContains(urlFraction), timeoutSeconds, "url containing " + urlFraction);
+	}
+
+	/**
+	 * Waits until the page is quiet: loaded, with no pending requests and no
+	 * recent DOM changes.
+	 *
+	 * @return true, if it became quiet before the timeout
+	 */
+	public boolean untilQuiet(long timeoutSeconds) {
+		return until(new ExpectedCondition<Boolean>() {
+			@Override
+			public Boolean apply(WebDriver driver) {
+				return Boolean.TRUE.equals(((JavascriptExecutor) driver).executeScript(QUIET_SCRIPT, QUIET_MILLIS));
+			}
+		}, timeoutSeconds, "page to be quiet");
+	}
+
+	private boolean until(ExpectedCondition<Boolean> condition, long timeoutSeconds, String description) {
+		return Boolean.TRUE.equals(get(condition, timeoutSeconds, description));
+	}
+
+	private <T> T get(ExpectedCondition<T> condition, long timeoutSeconds, String description) {
+		long start = System.currentTimeMillis();
+		try {
+			T result = new WebDriverWait(driver, timeoutSeconds, POLL_MILLIS).until(condition);
+			System.out.println("Waited " + (System.currentTimeMillis() - start) + " ms for " + description);
+			return result;
+		} catch (final TimeoutException e) {
+			System.out.println("Gave up waiting for " + description + " after " + timeoutSeconds + " s");
+			return null;
+		}
+	}
+}
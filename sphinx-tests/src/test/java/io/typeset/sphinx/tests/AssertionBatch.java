@@ -0,0 +1,197 @@
+package io.typeset.sphinx.tests;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriverException;
+
+/**
+ * The assertions of one generated given() or then() step, evaluated together.
+ * Checks the browser can answer on its own (atPage, canSee, contains, empty,
+ * enabled, toggled, heading and the subheadings on CSS or XPath locators) are
+ * sent in a single script that returns one result per check; the script is
+ * repeated every POLL_MILLIS until every result is as expected or
+ * TIMEOUT_MILLIS pass, which stands in for the implicit wait the individual
+ * lookups used to get. Any other check is made by calling the ActionClass
+ * method of the same name.
+ */
+public class AssertionBatch {
+
+	public static final long TIMEOUT_MILLIS = 15000;
+
+	private static final String CHECK_SCRIPT = "var c = arguments[0], r = [];"
+			+ "function find(kind, selector, index) {"
+			+ "  if (kind == 'css') return document.querySelectorAll(selector)[index] || null;"
+			+ "  return document.evaluate(selector, document, null,"
+			+ "    XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null).snapshotItem(index); }"
+			+ "function text(e) { return (e.innerText || '').trim(); }"
+			+ "for (var i = 0; i < c.length; i += 5) {"
+			+ "  var fn = c[i], data = c[i + 4], e = null;"
+			+ "  if (fn == 'atPage') {"
+			+ "    var url = location.href.split('https://').join('').split('http://').join('').split('www.').join('');"
+			+ "    r.push(url.indexOf(data) >= 0); continue; }"
+			+ "  e = find(c[i + 1], c[i + 2], parseInt(c[i + 3], 10));"
+			+ "  if (fn == 'canSee') r.push(e != null);"
+			+ "  else if (e == null) r.push(false);"
+			+ "  else if (fn == 'contains') r.push(text(e).toLowerCase().indexOf(data.toLowerCase()) >= 0);"
+			+ "  else if (fn == 'empty') r.push(text(e).length == 0);"
+			+ "  else if (fn == 'enabled') r.push(e.getAttribute('data-spx-state') == 'enabled');"
+			+ "  else if (fn == 'toggled') r.push(e.getAttribute('data-spx-toggle') == 'true');"
+			+ "  else { var p = e.parentElement; r.push(p != null && p.closest(data) != null); }"
+			+ "}"
+			+ "return r;";
+
+	private static final String[] SCRIPT_FUNCTIONS = { "atPage", "canSee", "contains", "empty", "enabled", "toggled" };
+
+	private ActionClass actions;
+
+	private List<String> functions = new ArrayList<String>();
+	private List<By> locators = new ArrayList<By>();
+	private List<String> data = new ArrayList<String>();
+	private List<String> elementNumbers = new ArrayList<String>();
+	private List<Boolean> expected = new ArrayList<Boolean>();
+
+	private boolean[] results;
+
+	public AssertionBatch(ActionClass actions) {
+		this.actions = actions;
+	}
+
+	/**
+	 * Adds a check; data is null for checks that take none.
+	 */
+	public void add(String function, By locator, String data, String elementNumber, boolean expected) {
+		this.functions.add(function);
+		this.locators.add(locator);
+		this.data.add(data);
+		this.elementNumbers.add(elementNumber);
+		this.expected.add(expected);
+	}
+
+	/**
+	 * Makes every check.
+	 */
+	public void evaluate() {
+		int size = functions.size();
+		results = new boolean[size];
+
+		List<Integer> scripted = new ArrayList<Integer>();
+		List<Object> arguments = new ArrayList<Object>();
+		for (int i = 0; i < size; i++) {
+			String[] selector = locators.get(i) == null ? null : ElementResolver.toSelector(locators.get(i));
+			String function = functions.get(i);
+			if (function.equals("atPage")) {
+				arguments.add(function);
+				arguments.add(null);
+				arguments.add(null);
+				arguments.add(null);
+				arguments.add(data.get(i));
+			} else if (selector != null && (isScriptFunction(function) || getHeadingTag(function) != null)) {
+				arguments.add(isScriptFunction(function) ? function : "heading");
+				arguments.add(selector[0]);
+				arguments.add(selector[1]);
+				arguments.add(elementNumbers.get(i));
+				arguments.add(isScriptFunction(function) ? data.get(i) : getHeadingTag(function));
+			} else {
+				continue;
+			}
+			scripted.add(i);
+		}
+
+		if (!scripted.isEmpty() && !evaluateScripted(scripted, arguments)) {
+			scripted.clear();
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (!scripted.contains(i)) {
+				results[i] = invoke(i);
+			}
+		}
+	}
+
+	/**
+	 * Gets the result of a check.
+	 */
+	public boolean get(int index) {
+		return results[index];
+	}
+
+	private boolean evaluateScripted(List<Integer> scripted, List<Object> arguments) {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		JavascriptExecutor executor = (JavascriptExecutor) ConfigClass.getDriver();
+		while (true) {
+			List<?> values;
+			try {
+				values = (List<?>) executor.executeScript(CHECK_SCRIPT, arguments);
+			} catch (WebDriverException e) {
+				System.out.println("Could not check in the browser, checking one by one : " + e.getMessage());
+				return false;
+			}
+			boolean done = true;
+			for (int k = 0; k < scripted.size(); k++) {
+				int i = scripted.get(k);
+				results[i] = Boolean.TRUE.equals(values.get(k));
+				done &= results[i] == expected.get(i);
+			}
+			if (done || System.currentTimeMillis() >= deadline) {
+				return true;
+			}
+			try {
+				Thread.sleep(AdaptiveWait.POLL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return true;
+			}
+		}
+	}
+
+	private boolean invoke(int i) {
+		String function = functions.get(i);
+		try {
+			Object result;
+			if (function.equals("atPage")) {
+				result = actions.getClass().getMethod(function, String.class).invoke(actions, data.get(i));
+			} else if (data.get(i) == null) {
+				Method method = actions.getClass().getMethod(function, By.class, String.class);
+				result = method.invoke(actions, locators.get(i), elementNumbers.get(i));
+			} else {
+				Method method = actions.getClass().getMethod(function, By.class, String.class, String.class);
+				result = method.invoke(actions, locators.get(i), data.get(i), elementNumbers.get(i));
+			}
+			return Boolean.TRUE.equals(result);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new IllegalArgumentException("No check named " + function, e);
+		}
+	}
+
+	private static boolean isScriptFunction(String function) {
+		for (String scriptFunction : SCRIPT_FUNCTIONS) {
+			if (scriptFunction.equals(function)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String getHeadingTag(String function) {
+		if (function.equals("heading")) {
+			return "h1";
+		}
+		if (function.matches("subheading[1-6]")) {
+			return "h" + function.substring("subheading".length());
+		}
+		return null;
+	}
+}
@@ -0,0 +1,131 @@
+package io.typeset.sphinx.tests;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * The Class BrowserState. A snapshot of what a test has built up in the
+ * browser: the current URL, the cookies and the web storage of the page.
+ * Restoring it puts another branch of a test back where the snapshot was
+ * taken without replaying the steps that led there.
+ */
+public class BrowserState {
+
+	private static final String READ_STORAGE = "var s = arguments[0] == 'local' ? localStorage : sessionStorage;"
+			+ "var o = {}; for (var i = 0; i < s.length; i++) { var k = s.key(i); o[k] = s.getItem(k); }"
+			+ "return JSON.stringify(o);";
+
+	private static final String WRITE_STORAGE = "var s = arguments[0] == 'local' ? localStorage : sessionStorage;"
+			+ "s.clear(); var o = JSON.parse(arguments[1]); for (var k in o) { s.setItem(k, o[k]); }";
+
+	private final String url;
+	private final Set<Cookie> cookies;
+	private final String localStorage;
+	private final String sessionStorage;
+
+	private BrowserState(String url, Set<Cookie> cookies, String localStorage, String sessionStorage) {
+		this.url = url;
+		this.cookies = cookies;
+		this.localStorage = localStorage;
+		this.sessionStorage = sessionStorage;
+	}
+
+	/**
+	 * Captures the state of the browser.
+	 *
+	 * @param driver the driver
+	 * @return the state
+	 */
+	public static BrowserState capture(WebDriver driver) {
+		JavascriptExecutor jse = (JavascriptExecutor) driver;
+		String localStorage = (String) jse.executeScript(READ_STORAGE, "local");
+		String sessionStorage = (String) jse.executeScript(READ_STORAGE, "session");
+		return new BrowserState(driver.getCurrentUrl(), new HashSet<Cookie>(driver.manage().getCookies()),
+				localStorage, sessionStorage);
+	}
+
+	/**
+	 * Makes a state from declared values rather than from the browser.
+	 *
+	 * @param url the url
+	 * @param cookies the cookies
+	 * @param localStorage the local storage entries
+	 * @param sessionStorage the session storage entries
+	 * @return the state
+	 */
+	public static BrowserState of(String url, Set<Cookie> cookies, Map<String, String> localStorage,
+			Map<String, String> sessionStorage) {
+		return new BrowserState(url, cookies, toJson(localStorage), toJson(sessionStorage));
+	}
+
+	/**
+	 * Puts the browser back in this state. Cookies and storage belong to the
+	 * origin of the captured page, so they are written once the browser is on
+	 * it, and the page is then loaded again to pick them up.
+	 *
+	 * @param driver the driver
+	 */
+	public void restore(WebDriver driver) {
+		if (!getOrigin(url).equals(getOrigin(driver.getCurrentUrl()))) {
+			driver.get(url);
+		}
+
+		driver.manage().deleteAllCookies();
+		for (Cookie cookie : cookies) {
+			driver.manage().addCookie(cookie);
+		}
+
+		JavascriptExecutor jse = (JavascriptExecutor) driver;
+		jse.executeScript(WRITE_STORAGE, "local", localStorage);
+		jse.executeScript(WRITE_STORAGE, "session", sessionStorage);
+
+		driver.get(url);
+		System.out.println("Restored browser state at " + url);
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	static String getOrigin(String url) {
+		int scheme = url.indexOf("://");
+		if (scheme < 0) {
+			return url;
+		}
+		int path = url.indexOf('/', scheme + 3);
+		return path < 0 ? url : url.substring(0, path);
+	}
+
+	private static String toJson(Map<String, String> entries) {
+		StringBuilder json = new StringBuilder("{");
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			appendJsonString(json, entry.getKey());
+			json.append(':');
+			appendJsonString(json, entry.getValue());
+		}
+		return json.append('}').toString();
+	}
+
+	private static void appendJsonString(StringBuilder json, String value) {
+		json.append('"');
+		for (int idx = 0; idx < value.length(); idx++) {
+			char c = value.charAt(idx);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+}
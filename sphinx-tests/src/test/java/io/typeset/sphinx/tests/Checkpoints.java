@@ -0,0 +1,84 @@
+package io.typeset.sphinx.tests;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Browser states captured at the end of given() steps, shared by all test
+ * threads and keyed by the path the step walks. A later test walking the same
+ * path restores the state instead of driving the UI along it again.
+ *
+ * A checkpoint is dropped when:
+ * <ul>
+ * <li>it is older than sphinx.checkpoint.ttlSeconds (300 by default);</li>
+ * <li>restoring it does not land on the captured URL, e.g. because the
+ * server ended the session;</li>
+ * <li>the given() step that restored it fails its assertions, since it is
+ * only put back once they pass;</li>
+ * <li>{@link #invalidate(String)} or {@link #invalidateAll()} is called, for
+ * example by a test that changes what the path leads to.</li>
+ * </ul>
+ * Setting sphinx.checkpoints=false turns checkpoints off.
+ */
+public class Checkpoints {
+
+	private static final boolean ENABLED = !"false".equals(System.getProperty("sphinx.checkpoints"));
+	private static final long TTL_MILLIS = Long.getLong("sphinx.checkpoint.ttlSeconds", 300) * 1000;
+
+	private static final ConcurrentMap<String, Checkpoint> checkpoints = new ConcurrentHashMap<String, Checkpoint>();
+
+	/** A captured state and the time it was first captured. */
+	static class Checkpoint {
+		private final BrowserState state;
+		private final long created;
+
+		Checkpoint(BrowserState state, long created) {
+			this.state = state;
+			this.created = created;
+		}
+
+		BrowserState getState() {
+			return state;
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() - created > TTL_MILLIS;
+		}
+	}
+
+	/**
+	 * Takes the live checkpoint of a path out of the store. It is put back
+	 * with {@link #put(String, Checkpoint)} once it has been verified.
+	 *
+	 * @return the checkpoint, or null if there is none
+	 */
+	static Checkpoint take(String key) {
+		if (!ENABLED) {
+			return null;
+		}
+		Checkpoint checkpoint = checkpoints.remove(key);
+		if (checkpoint != null && checkpoint.isExpired()) {
+			System.out.println("Checkpoint " + key + " expired");
+			return null;
+		}
+		return checkpoint;
+	}
+
+	static void put(String key, Checkpoint checkpoint) {
+		if (ENABLED) {
+			checkpoints.put(key, checkpoint);
+		}
+	}
+
+	static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	public static void invalidate(String key) {
+		checkpoints.remove(key);
+	}
+
+	public static void invalidateAll() {
+		checkpoints.clear();
+	}
+}
@@ -4,31 +4,24 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
-import java.util.concurrent.TimeUnit;
 
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
-import org.openqa.selenium.firefox.FirefoxDriver;
-import org.openqa.selenium.ie.InternetExplorerDriver;
-import org.openqa.selenium.phantomjs.PhantomJSDriver;
-import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeSuite;
 import org.testng.annotations.Parameters;
 
 public class ConfigClass {
 	public static String testDataFile;
-	public static WebDriver driver;
+	// the browser session of every test thread
+	private static final ThreadLocal<WebDriver> drivers = new ThreadLocal<WebDriver>();
 	static String OS = System.getProperty("os.name").toLowerCase();
 	InputStream inputStream;
 
-	private int BROWSER_TIMEOUT = 60;
 	Properties prop;
 
-	@AfterMethod
-	public void closedriver() {
-		driver.close();
+	public static WebDriver getDriver() {
+		return drivers.get();
 	}
 
 	@BeforeSuite
@@ -47,48 +40,16 @@ public class ConfigClass {
 	@BeforeMethod
 	@Parameters({ "Browser", "url", "Mode" })
 	public void Setconfiguration(String Browser, String Url, String Mode) throws IOException {
+		// the previous session stays with this thread until now, so that failure
+		// listeners running after the test can still take its screenshot
+		DriverPool.release(drivers.get());
+		StepEvents.reset();
+		drivers.set(DriverPool.checkout(Browser, Mode, Url));
+	}
 
-		if (Browser.equalsIgnoreCase("phantom")) {
-			driver = new PhantomJSDriver();
-			driver.manage().window().maximize();
-			driver.manage().timeouts().implicitlyWait(BROWSER_TIMEOUT, TimeUnit.SECONDS);
-			System.out.println("phantom driver selected");
-			driver.get(Url);
-
-		}
-
-		if (Browser.equalsIgnoreCase("firefox")) {
-			driver = new FirefoxDriver();
-			driver.manage().window().maximize();
-			driver.manage().timeouts().implicitlyWait(BROWSER_TIMEOUT, TimeUnit.SECONDS);
-			System.out.println("firefox driver selected");
-			driver.get(Url);
-		}
-
-		if (Browser.equalsIgnoreCase("chrome")) {
-			System.out.println("Chrome path : " + System.getProperty("webdriver.chrome.driver"));
-			final ChromeOptions chromeOptions = new ChromeOptions();
-			chromeOptions.addArguments("--window-size=1920x1080");
-			// chromeOptions.addArguments("--start-fullscreen");
-			System.out.println("Chrome mode " + Mode);
-			if (Mode.equals("headless")) {
-				System.out.println("Running in headless mode");
-				chromeOptions.addArguments("headless");
-			}
-			driver = new ChromeDriver(chromeOptions);
-			driver.manage().window().maximize();
-			driver.manage().timeouts().implicitlyWait(BROWSER_TIMEOUT, TimeUnit.SECONDS);
-			System.out.println("Chrome driver selected");
-			driver.get(Url);
-
-		}
-
-		if (Browser.equalsIgnoreCase("iexplorer")) {
-			driver = new InternetExplorerDriver();
-			driver.manage().timeouts().implicitlyWait(BROWSER_TIMEOUT, TimeUnit.SECONDS);
-			driver.manage().window().maximize();
-			driver.get(Url);
-		}
+	@AfterSuite(alwaysRun = true)
+	public void closeDrivers() {
+		DriverPool.shutdown();
 	}
 
 }
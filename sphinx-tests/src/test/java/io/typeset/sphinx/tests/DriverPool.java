@@ -0,0 +1,218 @@
+package io.typeset.sphinx.tests;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.ie.InternetExplorerDriver;
+import org.openqa.selenium.phantomjs.PhantomJSDriver;
+
+/**
+ * A pool of warm browser sessions, so that tests do not pay for starting a
+ * browser each. A session is checked out for one test and returned after it;
+ * on checkout it is health checked and reset (other windows closed, cookies
+ * and web storage cleared on the page the last test left open and on the home
+ * page, home page loaded again). A session is quit and replaced once it has
+ * served sphinx.driver.maxUses tests (20 by default). The pool is shared by
+ * all test threads; a session is used by one thread at a time.
+ *
+ * Cookies and storage of other sites the last test visited are not cleared;
+ * set sphinx.driver.pool=false to give every test a new browser instead.
+ */
+public class DriverPool {
+
+	static final int BROWSER_TIMEOUT = 60;
+	private static final int MAX_USES = Integer.getInteger("sphinx.driver.maxUses", 20);
+	private static final boolean ENABLED = !"false".equals(System.getProperty("sphinx.driver.pool"));
+
+	private static final String CLEAR_STORAGE = "try { localStorage.clear(); sessionStorage.clear(); } catch (e) {}";
+
+	// idle sessions by browser and mode
+	private static final Map<String, Deque<WebDriver>> idle = new HashMap<String, Deque<WebDriver>>();
+
+	private static final Map<WebDriver, Integer> uses = new HashMap<WebDriver, Integer>();
+	private static final Map<WebDriver, String> keys = new HashMap<WebDriver, String>();
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				shutdown();
+			}
+		});
+	}
+
+	/**
+	 * Checks out a session, reset and on the home page.
+	 */
+	public static WebDriver checkout(String browser, String mode, String url) {
+		String key = browser.toLowerCase() + "/" + mode;
+		while (true) {
+			WebDriver driver = poll(key);
+			if (driver == null) {
+				driver = create(browser, mode);
+				synchronized (DriverPool.class) {
+					uses.put(driver, 0);
+					keys.put(driver, key);
+				}
+			} else if (!reset(driver, url)) {
+				quit(driver);
+				continue;
+			}
+			synchronized (DriverPool.class) {
+				uses.put(driver, uses.get(driver) + 1);
+			}
+			driver.get(url);
+			return driver;
+		}
+	}
+
+	/**
+	 * Returns a session to the pool, or quits it if it is worn out or broken.
+	 */
+	public static void release(WebDriver driver) {
+		if (driver == null) {
+			return;
+		}
+		Integer used;
+		synchronized (DriverPool.class) {
+			used = uses.get(driver);
+		}
+		// the health check talks to the browser, so it is made outside the lock
+		if (ENABLED && used != null && used < MAX_USES && isHealthy(driver)) {
+			synchronized (DriverPool.class) {
+				Deque<WebDriver> sessions = idle.get(keys.get(driver));
+				if (sessions == null) {
+					sessions = new ArrayDeque<WebDriver>();
+					idle.put(keys.get(driver), sessions);
+				}
+				sessions.push(driver);
+			}
+			return;
+		}
+		System.out.println("Recycling browser session");
+		quit(driver);
+	}
+
+	/**
+	 * Quits every session, idle or checked out.
+	 */
+	public static void shutdown() {
+		List<WebDriver> drivers;
+		synchronized (DriverPool.class) {
+			drivers = new ArrayList<WebDriver>(uses.keySet());
+			idle.clear();
+		}
+		for (WebDriver driver : drivers) {
+			quit(driver);
+		}
+	}
+
+	private static synchronized WebDriver poll(String key) {
+		Deque<WebDriver> sessions = idle.get(key);
+		return sessions == null ? null : sessions.poll();
+	}
+
+	private static boolean isHealthy(WebDriver driver) {
+		try {
+			driver.getWindowHandle();
+			return true;
+		} catch (WebDriverException e) {
+			return false;
+		}
+	}
+
+	private static boolean reset(WebDriver driver, String url) {
+		try {
+			String handle = null;
+			for (String other : driver.getWindowHandles()) {
+				if (handle == null) {
+					handle = other;
+				} else {
+					driver.switchTo().window(other);
+					driver.close();
+				}
+			}
+			driver.switchTo().window(handle);
+			clearState(driver);
+			// storage is per origin, so the home page is cleared on the home page
+			driver.get(url);
+			clearState(driver);
+			return true;
+		} catch (WebDriverException e) {
+			System.out.println("Discarding broken browser session : " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Deletes the cookies and clears the web storage of the open page's site.
+	 */
+	private static void clearState(WebDriver driver) {
+		driver.manage().deleteAllCookies();
+		((JavascriptExecutor) driver).executeScript(CLEAR_STORAGE);
+	}
+
+	private static void quit(WebDriver driver) {
+		synchronized (DriverPool.class) {
+			uses.remove(driver);
+			keys.remove(driver);
+		}
+		try {
+			driver.quit();
+		} catch (WebDriverException e) {
+			System.out.println("Error while quitting browser session : " + e.getMessage());
+		}
+	}
+
+	private static WebDriver create(String browser, String mode) {
+		WebDriver driver = null;
+		if (browser.equalsIgnoreCase("phantom")) {
+			driver = new PhantomJSDriver();
+			driver.manage().window().maximize();
+			System.out.println("phantom driver selected");
+		}
+
+		if (browser.equalsIgnoreCase("firefox")) {
+			driver = new FirefoxDriver();
+			driver.manage().window().maximize();
+			System.out.println("firefox driver selected");
+		}
+
+		if (browser.equalsIgnoreCase("chrome")) {
+			System.out.println("Chrome path : " + System.getProperty("webdriver.chrome.driver"));
+			final ChromeOptions chromeOptions = new ChromeOptions();
+			chromeOptions.addArguments("--window-size=1920x1080");
+			// chromeOptions.addArguments("--start-fullscreen");
+			System.out.println("Chrome mode " + mode);
+			if (mode.equals("headless")) {
+				System.out.println("Running in headless mode");
+				chromeOptions.addArguments("headless");
+			}
+			driver = new ChromeDriver(chromeOptions);
+			driver.manage().window().maximize();
+			System.out.println("Chrome driver selected");
+		}
+
+		if (browser.equalsIgnoreCase("iexplorer")) {
+			driver = new InternetExplorerDriver();
+			driver.manage().window().maximize();
+		}
+
+		if (driver == null) {
+			throw new IllegalArgumentException("Unsupported browser " + browser);
+		}
+		driver.manage().timeouts().implicitlyWait(BROWSER_TIMEOUT, TimeUnit.SECONDS);
+		return driver;
+	}
+}
@@ -0,0 +1,129 @@
+package io.typeset.sphinx.tests;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Resolves the nth element matched by a locator and remembers it until the
+ * page may have changed. CSS and XPath locators are resolved in the browser
+ * with a single command that returns only the requested element; other
+ * locators, and elements that are not there yet, fall back to findElements so
+ * that the implicit wait still applies, except through findNow.
+ */
+public class ElementResolver {
+
+	private static final String FIND_CSS = "return document.querySelectorAll(arguments[0])[arguments[1]] || null;";
+
+	private static final String FIND_XPATH = "return document.evaluate(arguments[0], document, null, "
+			+ "XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null).snapshotItem(arguments[1]);";
+
+	private static final String CSS_PREFIX = "By.cssSelector: ";
+	private static final String XPATH_PREFIX = "By.xpath: ";
+
+	private WebDriver driver;
+
+	// resolved elements by index and locator
+	private Map<String, WebElement> elements = new HashMap<String, WebElement>();
+
+	public ElementResolver(WebDriver driver) {
+		this.driver = driver;
+	}
+
+	public WebDriver getDriver() {
+		return driver;
+	}
+
+	/**
+	 * Finds the element at an index of the matches of a locator.
+	 *
+	 * @return the element, or null if there are not that many matches
+	 */
+	public WebElement find(By locator, int index) {
+		return find(locator, index, true);
+	}
+
+	/**
+	 * Finds the element at an index of the matches of a locator without
+	 * waiting for it to appear, for conditions polled by an explicit wait.
+	 *
+	 * @return the element, or null if there are not that many matches
+	 */
+	public WebElement findNow(By locator, int index) {
+		return find(locator, index, false);
+	}
+
+	private WebElement find(By locator, int index, boolean implicitWait) {
+		String key = index + "#" + locator;
+		WebElement element = elements.get(key);
+		if (element == null) {
+			element = lookup(locator, index, implicitWait);
+			if (element != null) {
+				elements.put(key, element);
+			}
+		}
+		return element;
+	}
+
+	/**
+	 * Forgets every resolved element; called whenever the page may have changed.
+	 */
+	public void invalidate() {
+		elements.clear();
+	}
+
+	/**
+	 * Splits a CSS or XPath locator into its kind ("css" or "xpath") and
+	 * selector, for use in scripts.
+	 *
+	 * @return the kind and selector, or null for other locators
+	 */
+	static String[] toSelector(By locator) {
+		String description = locator.toString();
+		if (description.startsWith(CSS_PREFIX)) {
+			return new String[] { "css", description.substring(CSS_PREFIX.length()) };
+		}
+		if (description.startsWith(XPATH_PREFIX)) {
+			return new String[] { "xpath", description.substring(XPATH_PREFIX.length()) };
+		}
+		return null;
+	}
+
+	private WebElement lookup(By locator, int index, boolean implicitWait) {
+		String[] selector = toSelector(locator);
+		Object found = null;
+		try {
+			if (selector != null) {
+				found = execute(selector[0].equals("css") ? FIND_CSS : FIND_XPATH, selector[1], index);
+			}
+		} catch (WebDriverException e) {
+			System.out.println("Could not resolve " + locator + " in the browser : " + e.getMessage());
+		}
+		if (found instanceof WebElement) {
+			return (WebElement) found;
+		}
+
+		if (!implicitWait) {
+			driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS);
+		}
+		try {
+			List<WebElement> matches = driver.findElements(locator);
+			return index < matches.size() ? matches.get(index) : null;
+		} finally {
+			if (!implicitWait) {
+				driver.manage().timeouts().implicitlyWait(DriverPool.BROWSER_TIMEOUT, TimeUnit.SECONDS);
+			}
+		}
+	}
+
+	private Object execute(String script, String selector, int index) {
+		return ((JavascriptExecutor) driver).executeScript(script, selector, index);
+	}
+}
@@ -1,13 +1,18 @@
 package io.typeset.sphinx.tests;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -41,41 +46,16 @@ public class ExtentReporterNG implements IReporter {
 	String screenShotName = "Screenshot can be found at";
 	private static final String S3_BUCKET_NAME = "typeset-sphinx-output";
 	private static final String S3_LINK = "https://s3.console.aws.amazon.com/s3/buckets/";
+	private static final String TEST_SEPARATOR = "=== *** ===";
 
-	private List<String> readLogs(String filename) {
-		List<String> logLines = new ArrayList<String>();
-		try {
-			File f = new File(filename);
-			BufferedReader b = new BufferedReader(new FileReader(f));
-			String line = "";
-			while ((line = b.readLine()) != null) {
-				logLines.add(line);
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		return logLines;
-	}
+	/** The most bytes of the log mapped at a time. */
+	private static final int MAP_WINDOW = 64 * 1024 * 1024;
 
 	public void generateReport(List<XmlSuite> xmlSuites, List<ISuite> suites, String outputDirectory) {
-		// String outputFile = System.getProperty("user.dir") + File.separator +
-		// "target" + File.separator
-		// + "surefire-reports" + File.separator + "TestSuite-output.txt";
-		// List<String> logLines = readLogs(outputFile);
-		// processFiles(logLines, outputFile);
-
 		File sphinxDir = new File(System.getProperty("user.dir")).getParentFile();
 		String logFile = sphinxDir + File.separator + "sphinx.log";
 		String screenshotDir = sphinxDir + File.separator + "Screenshots";
 
-		System.out.println("Screenshots " + logFile + " -- " + screenshotDir);
-		
-		if(!new File(screenshotDir).exists()) {
-			return;
-		}
-
-		List<String> allScreenshots = getAllScreenshots(screenshotDir);
-
 		String jobName = System.getenv("JOB_NAME");
 		boolean postToSlack = true;
 		if (jobName == null) {
@@ -84,6 +64,18 @@ public class ExtentReporterNG implements IReporter {
 		}
 		String buildURL = System.getenv("BUILD_URL");
 
+		if (new File(logFile).isFile()) {
+			processLog(logFile, postToSlack);
+		}
+
+		System.out.println("Screenshots " + logFile + " -- " + screenshotDir);
+		
+		if(!new File(screenshotDir).exists()) {
+			return;
+		}
+
+		List<String> allScreenshots = getAllScreenshots(screenshotDir);
+
 		if (allScreenshots.size() > 0 && postToSlack) {
 			String folderName = UUID.randomUUID().toString();
 			uploadToS3(folderName, logFile, screenshotDir, allScreenshots);
@@ -120,110 +112,176 @@ public class ExtentReporterNG implements IReporter {
 		return allScreenshots;
 	}
 
-	private void writeProcessedOutput(List<List> content, String processedFilename, String outputFile) {
-		BufferedWriter bw = null;
-		FileWriter fw = null;
-		try {
-			fw = new FileWriter(processedFilename);
-			bw = new BufferedWriter(fw);
-			for (List<String> testLog : content) {
-				for (String line : testLog) {
-					bw.write(line + "\n");
+	/**
+	 * Breaks a log down by test into TestSuite-processed.txt, in a single pass
+	 * over the log. The log is memory mapped a window at a time and every test
+	 * is written out as soon as it is read, so memory stays bounded however
+	 * large the log is.
+	 *
+	 * @param logFile
+	 *            the log file
+	 * @param postToSlack
+	 *            whether the specs that potentially failed are posted to Slack
+	 */
+	private void processLog(String logFile, boolean postToSlack) {
+		String processedFilename = System.getProperty("user.dir") + File.separator + "target" + File.separator
+				+ "surefire-reports" + File.separator + "TestSuite-processed.txt";
+		new File(processedFilename).getParentFile().mkdirs();
+
+		LogBreakdown breakdown = null;
+		try (FileChannel channel = FileChannel.open(Paths.get(logFile), StandardOpenOption.READ);
+				BufferedWriter writer = Files.newBufferedWriter(Paths.get(processedFilename),
+						StandardCharsets.UTF_8)) {
+			breakdown = new LogBreakdown(writer);
+			long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				long length = Math.min(MAP_WINDOW, size - position);
+				MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, length);
+				int limit = window.limit();
+				int lineStart = 0;
+				for (int idx = 0; idx < limit; idx++) {
+					if (window.get(idx) == '\n') {
+						breakdown.line(window, lineStart, idx);
+						lineStart = idx + 1;
+					}
+				}
+				if (position + limit == size || lineStart == 0) {
+					// the last line, or one longer than the window, which is split
+					if (lineStart < limit) {
+						breakdown.line(window, lineStart, limit);
+					}
+					position += limit;
+				} else {
+					// the next window starts with the line cut by this one
+					position += lineStart;
 				}
-				bw.write("=== *** ===");
 			}
+			breakdown.finish();
 		} catch (IOException e) {
 			e.printStackTrace();
-		} finally {
-			try {
-				if (bw != null)
-					bw.close();
-				if (fw != null)
-					fw.close();
-			} catch (IOException ex) {
-				ex.printStackTrace();
+		}
+
+		if (breakdown != null && breakdown.foundErrors && postToSlack) {
+			String folderName = UUID.randomUUID().toString();
+			// uploadToS3(folderName, processedFilename, logFile, breakdown.imageList);
+			String failingSpecString = "";
+			for (String s : breakdown.failingSpecs) {
+				failingSpecString += s + ", ";
 			}
+			String slackMsg = "*Errors have occured in Sphinx execution.*\n" + "Potentially failing specs : "
+					+ failingSpecString + "More details, screenshots can be found at\n" + S3_LINK + S3_BUCKET_NAME + "/"
+					+ folderName + "/?region=us-west-2&tab=overview";
+			sendSlackMessage(slackMsg);
 		}
 	}
 
-	private void processFiles(List<String> logLines, String outputFile) {
-
-		List<List> allTtestLogs = new ArrayList<List>();
+	/**
+	 * The breakdown of a log by test, built line by line. The lines kept for
+	 * a test are written out as they come, so only the specs and screenshots
+	 * found are held in memory.
+	 */
+	private class LogBreakdown {
+		private final BufferedWriter writer;
+		private byte[] bytes = new byte[1024];
 
-		int fncStart = 0;
-		int fncEnd = 0;
+		private int testLines = 0;
+		private int fncStart = 0;
+		private int fncEnd = 0;
 
 		boolean foundErrors = false;
-		List<String> imageList = new ArrayList<String>();
-		Set<String> failingSpecs = new TreeSet<String>();
-
-		List<String> testLogs = new ArrayList<String>();
-		for (String l : logLines) {
-			if (l.contains(functionStart) && l.contains(testStart)) {
-				if (testLogs.size() > 0) {
-					if (fncStart > 0 && (fncStart > fncEnd)) {
-						testLogs.add("POTENTIAL ERROR");
-					}
-					allTtestLogs.add(testLogs);
-					testLogs = new ArrayList<String>();
-					fncStart = 0;
-					fncEnd = 0;
-				}
+		final List<String> imageList = new ArrayList<String>();
+		final Set<String> failingSpecs = new TreeSet<String>();
 
-			} else {
-				if (l.contains(functionStart)) {
-					testLogs.add(prettify(l));
-					String specName = getSpecName(l);
-					if (specName != null) {
-						failingSpecs.add(specName);
-					}
-					fncStart++;
-				}
+		LogBreakdown(BufferedWriter writer) {
+			this.writer = writer;
+		}
 
-				if (l.contains(functionEnd)) {
-					testLogs.add(prettify(l));
-					fncEnd++;
-				}
+		/**
+		 * Reads the line between two positions of a buffer.
+		 */
+		void line(ByteBuffer buffer, int from, int to) throws IOException {
+			if (to > from && buffer.get(to - 1) == '\r') {
+				to--;
+			}
+			int length = to - from;
+			if (length > bytes.length) {
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+			}
+			for (int idx = 0; idx < length; idx++) {
+				bytes[idx] = buffer.get(from + idx);
+			}
+			line(new String(bytes, 0, length, StandardCharsets.UTF_8));
+		}
 
-				if (l.contains(screenShotName)) {
-					String imagePath = getImagepath(l);
-					if (imagePath != null) {
-						testLogs.add("image_" + imageList.size() + ".png");
-						imageList.add(imagePath);
-					}
+		private void line(String l) throws IOException {
+			boolean isFunctionStart = l.contains(functionStart);
+			if (isFunctionStart && l.contains(testStart)) {
+				endTest(false);
+				return;
+			}
+
+			if (isFunctionStart) {
+				add(prettify(l));
+				String specName = getSpecName(l);
+				if (specName != null) {
+					failingSpecs.add(specName);
 				}
+				fncStart++;
+			}
 
-				if (l.contains("Error")) {
-					testLogs.add(l);
-					foundErrors = true;
+			if (l.contains(functionEnd)) {
+				add(prettify(l));
+				fncEnd++;
+			}
+
+			if (l.contains(screenShotName)) {
+				String imagePath = getImagepath(l);
+				if (imagePath != null) {
+					add("image_" + imageList.size() + ".png");
+					imageList.add(imagePath);
 				}
 			}
-		}
-		if (testLogs.size() > 0) {
-			if (fncStart > 0 && (fncStart > fncEnd)) {
-				testLogs.add("POTENTIAL ERROR");
+
+			if (l.contains("Error")) {
+				add(l);
 				foundErrors = true;
 			}
-			allTtestLogs.add(testLogs);
 		}
 
-		String processedFilename = System.getProperty("user.dir") + File.separator + "target" + File.separator
-				+ "surefire-reports" + File.separator + "TestSuite-processed.txt";
+		/**
+		 * Ends the last test at the end of the log.
+		 */
+		void finish() throws IOException {
+			endTest(true);
+			writer.flush();
+		}
 
-		writeProcessedOutput(allTtestLogs, processedFilename, outputFile);
-		if (foundErrors) {
-			String folderName = UUID.randomUUID().toString();
-			// uploadToS3(folderName, processedFilename, outputFile, imageList);
-			String failingSpecString = "";
-			for (String s : failingSpecs) {
-				failingSpecString += s + ", ";
-			}
-			String slackMsg = "*Errors have occured in Sphinx execution.*\n" + "Potentially failing specs : "
-					+ failingSpecString + "More details, screenshots can be found at\n" + S3_LINK + S3_BUCKET_NAME + "/"
-					+ folderName + "/?region=us-west-2&tab=overview";
-			sendSlackMessage(slackMsg);
+		private void add(String l) throws IOException {
+			writer.write(l + "\n");
+			testLines++;
 		}
 
+		/**
+		 * Ends the test in progress, if it logged anything. A function that
+		 * started but never ended is flagged, and counts as an error only for
+		 * the last test of the log.
+		 */
+		private void endTest(boolean last) throws IOException {
+			if (testLines == 0) {
+				return;
+			}
+			if (fncStart > 0 && (fncStart > fncEnd)) {
+				writer.write("POTENTIAL ERROR\n");
+				if (last) {
+					foundErrors = true;
+				}
+			}
+			writer.write(TEST_SEPARATOR);
+			testLines = 0;
+			fncStart = 0;
+			fncEnd = 0;
+		}
 	}
 
 	private String getSpecName(String l) {
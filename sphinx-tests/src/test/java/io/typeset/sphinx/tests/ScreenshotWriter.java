@@ -0,0 +1,100 @@
+package io.typeset.sphinx.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes screenshots, and optionally the page source next to them, on a
+ * background thread so that failing tests do not wait for the disk. At most
+ * sphinx.screenshot.queue (16 by default) captures wait to be written; past
+ * that the capturing thread writes its own, which bounds the memory held.
+ *
+ * Screenshots are kept as the PNG the driver returns, which is already
+ * compressed; page sources are gzipped. Every file gets a unique name, so
+ * captures of the same test from different threads or retries do not
+ * overwrite each other.
+ */
+public class ScreenshotWriter {
+
+	public static final String DIRECTORY = "Screenshots";
+
+	private static final int QUEUE_SIZE = Integer.getInteger("sphinx.screenshot.queue", 16);
+
+	// a single writer thread that ends when idle, so pending writes finish before the JVM exits
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadPoolExecutor.CallerRunsPolicy());
+
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	static {
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queues a capture for writing.
+	 *
+	 * @param name the name of the capture, with or without .png
+	 * @param image the PNG bytes
+	 * @param pageSource the page source, or null
+	 * @return the absolute path the screenshot is written to
+	 */
+	public static String write(String name, final byte[] image, final String pageSource) {
+		String base = name.endsWith(".png") ? name.substring(0, name.length() - 4) : name;
+		base += "_" + System.currentTimeMillis() + "_" + counter.incrementAndGet();
+		final File imageFile = new File(DIRECTORY, base + ".png").getAbsoluteFile();
+		final File sourceFile = new File(DIRECTORY, base + ".html.gz").getAbsoluteFile();
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					imageFile.getParentFile().mkdirs();
+					writeFile(imageFile, image, false);
+					if (pageSource != null) {
+						writeFile(sourceFile, pageSource.getBytes("UTF-8"), true);
+					}
+				} catch (IOException e) {
+					System.out.println("Could not write screenshot " + imageFile + " : " + e.getMessage());
+				}
+			}
+		});
+		return imageFile.getPath();
+	}
+
+	/**
+	 * Waits until every queued capture has been written.
+	 */
+	public static void flush() {
+		try {
+			executor.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			System.out.println("Error while writing screenshots : " + e.getCause());
+		}
+	}
+
+	private static void writeFile(File file, byte[] content, boolean compress) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			if (compress) {
+				out = new GZIPOutputStream(out);
+			}
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package io.typeset.sphinx.tests;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Records the steps of the generated tests (actions, assertions and waits) as
+ * Java Flight Recorder events, so a single recording shows where the suite
+ * spends its time. Each event carries the spec, the node, the kind of step,
+ * the action type, the element index and the duration of the step.
+ *
+ * The event class needs the jdk.jfr API of JDK 11, while the tests are built
+ * for Java 7, so it lives in src/jfr/java, is only compiled by the jdk11
+ * profile and is loaded here by name. On older runtimes, or when the class was
+ * not built, steps cost a null check. Steps nest per thread; a step is ended
+ * by the innermost {@link #end()}.
+ */
+public class StepEvents {
+
+	private static final String RECORDER_CLASS = "io.typeset.sphinx.tests.jfr.JfrStepRecorder";
+
+	/** Opens and commits the events; implemented against jdk.jfr. */
+	public interface Recorder {
+		Object begin(String spec, String node, String kind, String action, int elementIndex);
+
+		void end(Object step);
+	}
+
+	private static final Recorder recorder = loadRecorder();
+
+	private static final ThreadLocal<Deque<Object>> openSteps = new ThreadLocal<Deque<Object>>() {
+		@Override
+		protected Deque<Object> initialValue() {
+			return new ArrayDeque<Object>();
+		}
+	};
+
+	private static Recorder loadRecorder() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (Recorder) Class.forName(RECORDER_CLASS).newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			System.out.println("Step events are not recorded : " + e);
+			return null;
+		}
+	}
+
+	public static boolean isEnabled() {
+		return recorder != null;
+	}
+
+	/**
+	 * Starts a step of the current thread.
+	 *
+	 * @param elementNumber
+	 *            the element index, -1 if the step is not about one element
+	 */
+	public static void begin(String spec, String node, String kind, String action, String elementNumber) {
+		if (recorder == null) {
+			return;
+		}
+		int elementIndex;
+		try {
+			elementIndex = Integer.parseInt(elementNumber);
+		} catch (NumberFormatException e) {
+			elementIndex = -1;
+		}
+		openSteps.get().push(recorder.begin(spec, node, kind, action, elementIndex));
+	}
+
+	/**
+	 * Ends the innermost step of the current thread and commits its event.
+	 */
+	public static void end() {
+		if (recorder == null) {
+			return;
+		}
+		Object step = openSteps.get().poll();
+		if (step != null) {
+			recorder.end(step);
+		}
+	}
+
+	/**
+	 * Drops the steps a failed test left open on the current thread.
+	 */
+	public static void reset() {
+		if (recorder != null) {
+			openSteps.get().clear();
+		}
+	}
+}